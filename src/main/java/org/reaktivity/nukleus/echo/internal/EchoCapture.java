@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Frame capture appended to a memory-mapped {@link OneToOneRingBuffer}, one record per frame keyed by
+ * frame type id, holding the capture time in epoch nanoseconds, the stream id and the raw frame bytes.
+ * <p>
+ * When the ring is full the oldest records are evicted to make room, so the file always holds the most
+ * recent frames. Only frames larger than the maximum ring message length are dropped.
+ */
+public final class EchoCapture implements AutoCloseable
+{
+    public static final int TIMESTAMP_OFFSET = 0;
+    public static final int STREAM_ID_OFFSET = TIMESTAMP_OFFSET + Long.BYTES;
+    public static final int FRAME_OFFSET = STREAM_ID_OFFSET + Long.BYTES;
+
+    private final MessageHandler evictor = (t, b, i, l) -> {};
+
+    private final MappedByteBuffer mapped;
+    private final RingBuffer ring;
+    private final AtomicBuffer buffer;
+    private final int maxFrameLength;
+    private final LongSupplier frames;
+    private final LongSupplier drops;
+    private final long epochNanos;
+    private final long startNanos;
+
+    public EchoCapture(
+        Path path,
+        int capacity,
+        LongSupplier frames,
+        LongSupplier drops)
+    {
+        final File file = path.toFile();
+        IoUtil.ensureDirectoryExists(file.getParentFile(), "capture");
+
+        this.mapped = IoUtil.mapNewFile(file, capacity + TRAILER_LENGTH);
+        this.ring = new OneToOneRingBuffer(new UnsafeBuffer(mapped));
+        this.buffer = ring.buffer();
+        this.maxFrameLength = ring.maxMsgLength() - FRAME_OFFSET;
+        this.frames = frames;
+        this.drops = drops;
+        this.epochNanos = MILLISECONDS.toNanos(currentTimeMillis());
+        this.startNanos = nanoTime();
+    }
+
+    public void record(
+        int msgTypeId,
+        long streamId,
+        DirectBuffer frame,
+        int index,
+        int length)
+    {
+        int claimIndex = RingBuffer.INSUFFICIENT_CAPACITY;
+
+        if (length <= maxFrameLength)
+        {
+            claimIndex = ring.tryClaim(msgTypeId, FRAME_OFFSET + length);
+
+            while (claimIndex == RingBuffer.INSUFFICIENT_CAPACITY && ring.size() > 0)
+            {
+                ring.read(evictor, 1);
+                claimIndex = ring.tryClaim(msgTypeId, FRAME_OFFSET + length);
+            }
+        }
+
+        if (claimIndex >= 0)
+        {
+            buffer.putLong(claimIndex + TIMESTAMP_OFFSET, epochNanos + nanoTime() - startNanos);
+            buffer.putLong(claimIndex + STREAM_ID_OFFSET, streamId);
+            buffer.putBytes(claimIndex + FRAME_OFFSET, frame, index, length);
+            ring.commit(claimIndex);
+            frames.getAsLong();
+        }
+        else
+        {
+            drops.getAsLong();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        IoUtil.unmap(mapped);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.agrona.BitUtil.align;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.ALIGNMENT;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.HEADER_LENGTH;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.PADDING_MSG_TYPE_ID;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.encodedMsgOffset;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.lengthOffset;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.typeOffset;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.HEAD_POSITION_OFFSET;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TAIL_POSITION_OFFSET;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static org.reaktivity.nukleus.echo.internal.EchoCapture.FRAME_OFFSET;
+import static org.reaktivity.nukleus.echo.internal.EchoCapture.STREAM_ID_OFFSET;
+import static org.reaktivity.nukleus.echo.internal.EchoCapture.TIMESTAMP_OFFSET;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Reads the frames recorded by {@link EchoCapture} in place, without consuming them from the ring,
+ * so that the same file can be parsed repeatedly while the writer is detached.
+ */
+public final class EchoCaptureReader implements AutoCloseable
+{
+    @FunctionalInterface
+    public interface FrameHandler
+    {
+        void onFrame(
+            int msgTypeId,
+            long timestamp,
+            long streamId,
+            DirectBuffer buffer,
+            int index,
+            int length);
+    }
+
+    private final MappedByteBuffer mapped;
+    private final AtomicBuffer buffer;
+    private final int capacity;
+
+    public EchoCaptureReader(
+        Path path)
+    {
+        this(path, MapMode.READ_WRITE);
+    }
+
+    public EchoCaptureReader(
+        Path path,
+        MapMode mode)
+    {
+        this.mapped = IoUtil.mapExistingFile(path.toFile(), mode, "capture");
+        this.buffer = new UnsafeBuffer(mapped);
+        this.capacity = buffer.capacity() - TRAILER_LENGTH;
+    }
+
+    public AtomicBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int forEach(
+        FrameHandler handler)
+    {
+        final long head = buffer.getLongVolatile(capacity + HEAD_POSITION_OFFSET);
+        final long tail = buffer.getLongVolatile(capacity + TAIL_POSITION_OFFSET);
+        final int mask = capacity - 1;
+
+        int frames = 0;
+        long position = head;
+
+        while (position < tail)
+        {
+            final int recordIndex = (int) position & mask;
+            final int recordLength = buffer.getIntVolatile(lengthOffset(recordIndex));
+
+            if (recordLength <= 0)
+            {
+                break;
+            }
+
+            if (buffer.getInt(typeOffset(recordIndex)) != PADDING_MSG_TYPE_ID)
+            {
+                final int msgTypeId = buffer.getInt(typeOffset(recordIndex));
+                final int offset = encodedMsgOffset(recordIndex);
+                final long timestamp = buffer.getLong(offset + TIMESTAMP_OFFSET);
+                final long streamId = buffer.getLong(offset + STREAM_ID_OFFSET);
+                final int length = recordLength - HEADER_LENGTH - FRAME_OFFSET;
+
+                handler.onFrame(msgTypeId, timestamp, streamId, buffer, offset + FRAME_OFFSET, length);
+                frames++;
+            }
+
+            position += align(recordLength, ALIGNMENT);
+        }
+
+        return frames;
+    }
+
+    @Override
+    public void close()
+    {
+        IoUtil.unmap(mapped);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Running {@link CRC32C} over payload regions of a {@link DirectBuffer}, read in place through the
+ * backing byte array or a cached view of the backing {@link ByteBuffer} so the JDK intrinsic applies.
+ */
+public final class EchoChecksum
+{
+    public static final int LENGTH = Integer.BYTES;
+
+    private static final int SCRATCH_LENGTH = 256;
+
+    private final CRC32C crc = new CRC32C();
+
+    private ByteBuffer source;
+    private ByteBuffer view;
+    private byte[] scratch;
+
+    public void reset()
+    {
+        crc.reset();
+    }
+
+    public int value()
+    {
+        return (int) crc.getValue();
+    }
+
+    public void update(
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        final byte[] byteArray = buffer.byteArray();
+        final ByteBuffer byteBuffer = buffer.byteBuffer();
+        final int position = buffer.wrapAdjustment() + offset;
+
+        if (byteArray != null)
+        {
+            crc.update(byteArray, position, length);
+        }
+        else if (byteBuffer != null)
+        {
+            if (byteBuffer != source)
+            {
+                source = byteBuffer;
+                view = byteBuffer.duplicate();
+            }
+
+            view.limit(position + length);
+            view.position(position);
+            crc.update(view);
+            view.clear();
+        }
+        else
+        {
+            if (scratch == null)
+            {
+                scratch = new byte[SCRATCH_LENGTH];
+            }
+
+            for (int progress = 0; progress < length; progress += SCRATCH_LENGTH)
+            {
+                final int chunk = Math.min(length - progress, SCRATCH_LENGTH);
+                buffer.getBytes(offset + progress, scratch, 0, chunk);
+                crc.update(scratch, 0, chunk);
+            }
+        }
+    }
+}
@@ -15,15 +15,75 @@
  */
 package org.reaktivity.nukleus.echo.internal;
 
+import static org.agrona.BitUtil.isPowerOfTwo;
+
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
 import org.reaktivity.reaktor.nukleus.Configuration;
 
 public class EchoConfiguration extends Configuration
 {
+    public static final PropertyDef<EchoMode> ECHO_MODE;
+    public static final BooleanPropertyDef ECHO_BUFFERED;
+    public static final IntPropertyDef ECHO_COALESCE_LIMIT;
+    public static final LongPropertyDef ECHO_COALESCE_DELAY;
+    public static final IntPropertyDef ECHO_SHARED_BUDGET;
+    public static final BooleanPropertyDef ECHO_LATENCY_HISTOGRAM;
+    public static final BooleanPropertyDef ECHO_LATENCY_TIMESTAMP;
+    public static final IntPropertyDef ECHO_CLIENT_STREAMS;
+    public static final IntPropertyDef ECHO_CLIENT_PAYLOAD_SIZE;
+    public static final LongPropertyDef ECHO_CLIENT_RATE;
+    public static final LongPropertyDef ECHO_STREAM_RATE_LIMIT;
+    public static final LongPropertyDef ECHO_BINDING_RATE_LIMIT;
+    public static final LongPropertyDef ECHO_DELAY;
+    public static final LongPropertyDef ECHO_DELAY_JITTER;
+    public static final LongPropertyDef ECHO_IDLE_TIMEOUT;
+    public static final IntPropertyDef ECHO_MAX_STREAMS;
+    public static final IntPropertyDef ECHO_MAX_AUTHORIZED_STREAMS;
+    public static final BooleanPropertyDef ECHO_CAPTURE;
+    public static final IntPropertyDef ECHO_CAPTURE_CAPACITY;
+    public static final PropertyDef<String> ECHO_REPLAY;
+    public static final BooleanPropertyDef ECHO_REPLAY_TIMING;
+    public static final BooleanPropertyDef ECHO_CHECKSUM;
+    public static final PropertyDef<String> ECHO_GROUP;
+    public static final BooleanPropertyDef ECHO_MIRROR;
+    public static final IntPropertyDef ECHO_STATS_SAMPLE;
+    public static final IntPropertyDef ECHO_TRACE_SAMPLE;
+    public static final LongPropertyDef ECHO_TRACE_MASK;
+    public static final IntPropertyDef ECHO_TRACE_CAPACITY;
+
     private static final ConfigurationDef ECHO_CONFIG;
 
     static
     {
         final ConfigurationDef config = new ConfigurationDef(String.format("nukleus.%s", EchoNukleus.NAME));
+        ECHO_MODE = config.property(EchoMode.class, "mode", EchoConfiguration::decodeMode, EchoMode.ECHO);
+        ECHO_BUFFERED = config.property("buffered", false);
+        ECHO_COALESCE_LIMIT = config.property("coalesce.limit", 0);
+        ECHO_COALESCE_DELAY = config.property("coalesce.delay", 1L);
+        ECHO_SHARED_BUDGET = config.property("shared.budget", 0);
+        ECHO_LATENCY_HISTOGRAM = config.property("latency.histogram", false);
+        ECHO_LATENCY_TIMESTAMP = config.property("latency.timestamp", false);
+        ECHO_CLIENT_STREAMS = config.property("client.streams", 1);
+        ECHO_CLIENT_PAYLOAD_SIZE = config.property("client.payload.size", 1024);
+        ECHO_CLIENT_RATE = config.property("client.rate", 0L);
+        ECHO_STREAM_RATE_LIMIT = config.property("stream.rate.limit", 0L);
+        ECHO_BINDING_RATE_LIMIT = config.property("binding.rate.limit", 0L);
+        ECHO_DELAY = config.property("delay", 0L);
+        ECHO_DELAY_JITTER = config.property("delay.jitter", 0L);
+        ECHO_IDLE_TIMEOUT = config.property("idle.timeout", 0L);
+        ECHO_MAX_STREAMS = config.property("max.streams", 0);
+        ECHO_MAX_AUTHORIZED_STREAMS = config.property("max.authorized.streams", 0);
+        ECHO_CAPTURE = config.property("capture", false);
+        ECHO_CAPTURE_CAPACITY = config.property("capture.capacity", 1024 * 1024);
+        ECHO_REPLAY = config.property("replay");
+        ECHO_REPLAY_TIMING = config.property("replay.timing", true);
+        ECHO_CHECKSUM = config.property("checksum", false);
+        ECHO_GROUP = config.property("group");
+        ECHO_MIRROR = config.property("mirror", false);
+        ECHO_STATS_SAMPLE = config.property("stats.sample", 0);
+        ECHO_TRACE_SAMPLE = config.property("trace.sample", 0);
+        ECHO_TRACE_MASK = config.property("trace.mask", 0L);
+        ECHO_TRACE_CAPACITY = config.property("trace.capacity", 1024 * 1024);
         ECHO_CONFIG = config;
     }
 
@@ -31,5 +91,168 @@ public class EchoConfiguration extends Configuration
         Configuration config)
     {
         super(ECHO_CONFIG, config);
+
+        final int traceCapacity = traceCapacity();
+        if (!isPowerOfTwo(traceCapacity))
+        {
+            throw new IllegalArgumentException(
+                String.format("nukleus.echo.trace.capacity %d is not a power of two", traceCapacity));
+        }
+
+        final int captureCapacity = captureCapacity();
+        if (!isPowerOfTwo(captureCapacity))
+        {
+            throw new IllegalArgumentException(
+                String.format("nukleus.echo.capture.capacity %d is not a power of two", captureCapacity));
+        }
+    }
+
+    public EchoMode mode()
+    {
+        return ECHO_MODE.get(this);
+    }
+
+    public boolean buffered()
+    {
+        return ECHO_BUFFERED.getAsBoolean(this);
+    }
+
+    public int coalesceLimit()
+    {
+        return ECHO_COALESCE_LIMIT.getAsInt(this);
+    }
+
+    public long coalesceDelay()
+    {
+        return ECHO_COALESCE_DELAY.getAsLong(this);
+    }
+
+    public int sharedBudget()
+    {
+        return ECHO_SHARED_BUDGET.getAsInt(this);
+    }
+
+    public boolean latencyHistogram()
+    {
+        return ECHO_LATENCY_HISTOGRAM.getAsBoolean(this);
+    }
+
+    public boolean latencyTimestamp()
+    {
+        return ECHO_LATENCY_TIMESTAMP.getAsBoolean(this);
+    }
+
+    public int clientStreams()
+    {
+        return ECHO_CLIENT_STREAMS.getAsInt(this);
+    }
+
+    public int clientPayloadSize()
+    {
+        return ECHO_CLIENT_PAYLOAD_SIZE.getAsInt(this);
+    }
+
+    public long clientRate()
+    {
+        return ECHO_CLIENT_RATE.getAsLong(this);
+    }
+
+    public long streamRateLimit()
+    {
+        return ECHO_STREAM_RATE_LIMIT.getAsLong(this);
+    }
+
+    public long bindingRateLimit()
+    {
+        return ECHO_BINDING_RATE_LIMIT.getAsLong(this);
+    }
+
+    public long delay()
+    {
+        return ECHO_DELAY.getAsLong(this);
+    }
+
+    public long delayJitter()
+    {
+        return ECHO_DELAY_JITTER.getAsLong(this);
+    }
+
+    public long idleTimeout()
+    {
+        return ECHO_IDLE_TIMEOUT.getAsLong(this);
+    }
+
+    public int maxStreams()
+    {
+        return ECHO_MAX_STREAMS.getAsInt(this);
+    }
+
+    public int maxAuthorizedStreams()
+    {
+        return ECHO_MAX_AUTHORIZED_STREAMS.getAsInt(this);
+    }
+
+    public boolean capture()
+    {
+        return ECHO_CAPTURE.getAsBoolean(this);
+    }
+
+    public int captureCapacity()
+    {
+        return ECHO_CAPTURE_CAPACITY.getAsInt(this);
+    }
+
+    public String replay()
+    {
+        return ECHO_REPLAY.get(this);
+    }
+
+    public boolean replayTiming()
+    {
+        return ECHO_REPLAY_TIMING.getAsBoolean(this);
+    }
+
+    public boolean checksum()
+    {
+        return ECHO_CHECKSUM.getAsBoolean(this);
+    }
+
+    public String group()
+    {
+        return ECHO_GROUP.get(this);
+    }
+
+    public boolean mirror()
+    {
+        return ECHO_MIRROR.getAsBoolean(this);
+    }
+
+    public int statsSample()
+    {
+        return ECHO_STATS_SAMPLE.getAsInt(this);
+    }
+
+    /**
+     * Records one in every {@code trace.sample} trace ids, rounded up to the next power of two.
+     */
+    public int traceSample()
+    {
+        return ECHO_TRACE_SAMPLE.getAsInt(this);
+    }
+
+    public long traceMask()
+    {
+        return ECHO_TRACE_MASK.getAsLong(this);
+    }
+
+    public int traceCapacity()
+    {
+        return ECHO_TRACE_CAPACITY.getAsInt(this);
+    }
+
+    private static EchoMode decodeMode(
+        String value)
+    {
+        return EchoMode.valueOf(value.toUpperCase());
     }
 }
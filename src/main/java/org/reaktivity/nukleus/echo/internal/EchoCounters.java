@@ -0,0 +1,211 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+import org.agrona.DirectBuffer;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ChallengeFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+
+public final class EchoCounters
+{
+    public static final int FEATURE_LIMITS = 1 << 0;
+    public static final int FEATURE_IDLE = 1 << 1;
+    public static final int FEATURE_RATE = 1 << 2;
+    public static final int FEATURE_LOAD = 1 << 3;
+    public static final int FEATURE_CAPTURE = 1 << 4;
+    public static final int FEATURE_CHECKSUM = 1 << 5;
+    public static final int FEATURE_FANOUT = 1 << 6;
+    public static final int FEATURE_MIRROR = 1 << 7;
+    public static final int FEATURE_TRACE = 1 << 8;
+
+    private static final LongSupplier NO_COUNTER = () -> 0L;
+    private static final LongConsumer NO_ACCUMULATOR = v -> {};
+
+    public final LongSupplier streamsOpened;
+    public final LongSupplier streamsClosed;
+    public final LongSupplier streamsAborted;
+    public final LongSupplier streamsReaped;
+    public final LongSupplier streamsRejected;
+    public final LongConsumer streamsActive;
+    public final LongConsumer windowCredit;
+    public final LongSupplier windowThrottled;
+    public final LongSupplier loadFramesSent;
+    public final LongConsumer loadBytesSent;
+    public final LongConsumer loadBytesReceived;
+    public final LongSupplier loadMismatches;
+    public final LongSupplier captureFrames;
+    public final LongSupplier captureDrops;
+    public final LongSupplier checksumMismatches;
+    public final LongSupplier fanoutDelivered;
+    public final LongSupplier fanoutSkipped;
+    public final LongSupplier mirrorFrames;
+    public final LongSupplier mirrorDrops;
+    public final LongSupplier protocolViolations;
+    public final LongSupplier traceDrops;
+
+    private final EchoFrameStats stats;
+    private final LongSupplier beginFrames;
+    private final LongConsumer beginBytes;
+    private final LongSupplier dataFrames;
+    private final LongConsumer dataBytes;
+    private final LongSupplier endFrames;
+    private final LongConsumer endBytes;
+    private final LongSupplier abortFrames;
+    private final LongConsumer abortBytes;
+    private final LongSupplier flushFrames;
+    private final LongConsumer flushBytes;
+    private final LongSupplier resetFrames;
+    private final LongConsumer resetBytes;
+    private final LongSupplier windowFrames;
+    private final LongConsumer windowBytes;
+    private final LongSupplier challengeFrames;
+    private final LongConsumer challengeBytes;
+
+    public EchoCounters(
+        ElektronContext context,
+        long bindingId,
+        int features,
+        int statsSample)
+    {
+        final boolean limits = (features & FEATURE_LIMITS) != 0;
+        final boolean idle = (features & FEATURE_IDLE) != 0;
+        final boolean rate = (features & FEATURE_RATE) != 0;
+        final boolean load = (features & FEATURE_LOAD) != 0;
+        final boolean capture = (features & FEATURE_CAPTURE) != 0;
+        final boolean checksum = (features & FEATURE_CHECKSUM) != 0;
+        final boolean fanout = (features & FEATURE_FANOUT) != 0;
+        final boolean mirror = (features & FEATURE_MIRROR) != 0;
+        final boolean trace = (features & FEATURE_TRACE) != 0;
+
+        this.streamsOpened = context.supplyCounter(bindingId, "echo.streams.opened");
+        this.streamsClosed = context.supplyCounter(bindingId, "echo.streams.closed");
+        this.streamsAborted = context.supplyCounter(bindingId, "echo.streams.aborted");
+        this.streamsReaped = idle ? context.supplyCounter(bindingId, "echo.streams.reaped") : NO_COUNTER;
+        this.streamsRejected = limits ? context.supplyCounter(bindingId, "echo.streams.rejected") : NO_COUNTER;
+        this.streamsActive = context.supplyAccumulator(bindingId, "echo.streams.active");
+        this.windowCredit = context.supplyAccumulator(bindingId, "echo.window.credit");
+        this.windowThrottled = rate ? context.supplyCounter(bindingId, "echo.window.throttled") : NO_COUNTER;
+        this.loadFramesSent = load ? context.supplyCounter(bindingId, "echo.load.frames.sent") : NO_COUNTER;
+        this.loadBytesSent = load ? context.supplyAccumulator(bindingId, "echo.load.bytes.sent") : NO_ACCUMULATOR;
+        this.loadBytesReceived = load ? context.supplyAccumulator(bindingId, "echo.load.bytes.received") : NO_ACCUMULATOR;
+        this.loadMismatches = load ? context.supplyCounter(bindingId, "echo.load.mismatches") : NO_COUNTER;
+        this.captureFrames = capture ? context.supplyCounter(bindingId, "echo.capture.frames") : NO_COUNTER;
+        this.captureDrops = capture ? context.supplyCounter(bindingId, "echo.capture.drops") : NO_COUNTER;
+        this.checksumMismatches = checksum ? context.supplyCounter(bindingId, "echo.checksum.mismatches") : NO_COUNTER;
+        this.fanoutDelivered = fanout ? context.supplyCounter(bindingId, "echo.fanout.delivered") : NO_COUNTER;
+        this.fanoutSkipped = fanout ? context.supplyCounter(bindingId, "echo.fanout.skipped") : NO_COUNTER;
+        this.mirrorFrames = mirror ? context.supplyCounter(bindingId, "echo.mirror.frames") : NO_COUNTER;
+        this.mirrorDrops = mirror ? context.supplyCounter(bindingId, "echo.mirror.drops") : NO_COUNTER;
+        this.protocolViolations = context.supplyCounter(bindingId, "echo.protocol.violations");
+        this.traceDrops = trace ? context.supplyCounter(bindingId, "echo.trace.drops") : NO_COUNTER;
+
+        this.stats = statsSample > 0 ? new EchoFrameStats(context, bindingId, statsSample) : null;
+        final boolean exact = stats == null;
+        this.beginFrames = exact ? context.supplyCounter(bindingId, "echo.begin.frames") : NO_COUNTER;
+        this.beginBytes = exact ? context.supplyAccumulator(bindingId, "echo.begin.bytes") : NO_ACCUMULATOR;
+        this.dataFrames = exact ? context.supplyCounter(bindingId, "echo.data.frames") : NO_COUNTER;
+        this.dataBytes = exact ? context.supplyAccumulator(bindingId, "echo.data.bytes") : NO_ACCUMULATOR;
+        this.endFrames = exact ? context.supplyCounter(bindingId, "echo.end.frames") : NO_COUNTER;
+        this.endBytes = exact ? context.supplyAccumulator(bindingId, "echo.end.bytes") : NO_ACCUMULATOR;
+        this.abortFrames = exact ? context.supplyCounter(bindingId, "echo.abort.frames") : NO_COUNTER;
+        this.abortBytes = exact ? context.supplyAccumulator(bindingId, "echo.abort.bytes") : NO_ACCUMULATOR;
+        this.flushFrames = exact ? context.supplyCounter(bindingId, "echo.flush.frames") : NO_COUNTER;
+        this.flushBytes = exact ? context.supplyAccumulator(bindingId, "echo.flush.bytes") : NO_ACCUMULATOR;
+        this.resetFrames = exact ? context.supplyCounter(bindingId, "echo.reset.frames") : NO_COUNTER;
+        this.resetBytes = exact ? context.supplyAccumulator(bindingId, "echo.reset.bytes") : NO_ACCUMULATOR;
+        this.windowFrames = exact ? context.supplyCounter(bindingId, "echo.window.frames") : NO_COUNTER;
+        this.windowBytes = exact ? context.supplyAccumulator(bindingId, "echo.window.bytes") : NO_ACCUMULATOR;
+        this.challengeFrames = exact ? context.supplyCounter(bindingId, "echo.challenge.frames") : NO_COUNTER;
+        this.challengeBytes = exact ? context.supplyAccumulator(bindingId, "echo.challenge.bytes") : NO_ACCUMULATOR;
+    }
+
+    public void recordFrame(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if (stats != null)
+        {
+            stats.record(msgTypeId, buffer, index, length);
+        }
+        else
+        {
+            recordExactFrame(msgTypeId, length);
+        }
+    }
+
+    public void publishStats()
+    {
+        if (stats != null)
+        {
+            stats.publish();
+        }
+    }
+
+    private void recordExactFrame(
+        int msgTypeId,
+        int length)
+    {
+        switch (msgTypeId)
+        {
+        case BeginFW.TYPE_ID:
+            beginFrames.getAsLong();
+            beginBytes.accept(length);
+            break;
+        case DataFW.TYPE_ID:
+            dataFrames.getAsLong();
+            dataBytes.accept(length);
+            break;
+        case EndFW.TYPE_ID:
+            endFrames.getAsLong();
+            endBytes.accept(length);
+            break;
+        case AbortFW.TYPE_ID:
+            abortFrames.getAsLong();
+            abortBytes.accept(length);
+            break;
+        case FlushFW.TYPE_ID:
+            flushFrames.getAsLong();
+            flushBytes.accept(length);
+            break;
+        case ResetFW.TYPE_ID:
+            resetFrames.getAsLong();
+            resetBytes.accept(length);
+            break;
+        case WindowFW.TYPE_ID:
+            windowFrames.getAsLong();
+            windowBytes.accept(length);
+            break;
+        case ChallengeFW.TYPE_ID:
+            challengeFrames.getAsLong();
+            challengeBytes.accept(length);
+            break;
+        default:
+            break;
+        }
+    }
+}
@@ -15,12 +15,27 @@
  */
 package org.reaktivity.nukleus.echo.internal;
 
-import static java.util.Collections.singletonMap;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.CHARGEN;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.DISCARD;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.ECHO;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.FANOUT;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.REPLAY;
+import static org.reaktivity.reaktor.config.Role.CLIENT;
 import static org.reaktivity.reaktor.config.Role.SERVER;
 
+import java.util.EnumMap;
 import java.util.Map;
 
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.stream.EchoChargenFactory;
+import org.reaktivity.nukleus.echo.internal.stream.EchoClientFactory;
+import org.reaktivity.nukleus.echo.internal.stream.EchoDiscardFactory;
+import org.reaktivity.nukleus.echo.internal.stream.EchoFanoutFactory;
+import org.reaktivity.nukleus.echo.internal.stream.EchoReplayFactory;
+import org.reaktivity.nukleus.echo.internal.stream.EchoRouteFactory;
 import org.reaktivity.nukleus.echo.internal.stream.EchoServerFactory;
+import org.reaktivity.nukleus.echo.internal.stream.EchoStreamFactory;
 import org.reaktivity.reaktor.config.Binding;
 import org.reaktivity.reaktor.config.Role;
 import org.reaktivity.reaktor.nukleus.Elektron;
@@ -29,30 +44,84 @@ import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
 
 final class EchoElektron implements Elektron
 {
+    private final EchoConfiguration config;
+    private final ElektronContext context;
     private final EchoRouter router;
+    private final EchoServerFactory serverFactory;
+    private final EchoClientFactory clientFactory;
+    private final EchoFanoutFactory fanoutFactory;
     private final Map<Role, StreamFactory> factories;
+    private final Map<EchoMode, EchoStreamFactory> servers;
+    private final StreamFactory routeFactory;
 
     EchoElektron(
         EchoConfiguration config,
         ElektronContext context)
     {
+        this.config = config;
+        this.context = context;
         this.router = new EchoRouter();
-        this.factories = singletonMap(SERVER, new EchoServerFactory(config, context, router));
+        this.serverFactory = new EchoServerFactory(config, context, router);
+        this.clientFactory = new EchoClientFactory(config, context);
+        this.fanoutFactory = new EchoFanoutFactory(context, router);
+
+        final Map<Role, StreamFactory> factories = new EnumMap<>(Role.class);
+        factories.put(SERVER, serverFactory);
+        factories.put(CLIENT, clientFactory);
+        this.factories = factories;
+
+        final Map<EchoMode, EchoStreamFactory> servers = new EnumMap<>(EchoMode.class);
+        servers.put(ECHO, serverFactory);
+        servers.put(DISCARD, new EchoDiscardFactory(context, router));
+        servers.put(CHARGEN, new EchoChargenFactory(context, router));
+        servers.put(REPLAY, new EchoReplayFactory(context, router));
+        servers.put(FANOUT, fanoutFactory);
+        this.servers = servers;
+        this.routeFactory = new EchoRouteFactory(context, router, servers);
     }
 
     @Override
     public StreamFactory attach(
         Binding binding)
     {
-        router.attach(binding);
-        return factories.get(binding.kind);
+        final EchoBinding echoBinding = new EchoBinding(binding, config, context);
+        router.attach(echoBinding);
+
+        if (binding.kind == CLIENT)
+        {
+            clientFactory.attach(echoBinding);
+        }
+        else
+        {
+            serverFactory.attach(echoBinding);
+
+            if (echoBinding.mode == FANOUT)
+            {
+                fanoutFactory.attach(echoBinding);
+            }
+        }
+
+        StreamFactory factory = factories.get(binding.kind);
+        if (binding.kind == SERVER)
+        {
+            factory = echoBinding.routed ? routeFactory : servers.get(echoBinding.mode);
+        }
+
+        return factory;
     }
 
     @Override
     public void detach(
         Binding binding)
     {
-        router.detach(binding.id);
+        clientFactory.detach(binding.id);
+        fanoutFactory.detach(binding.id);
+
+        final EchoBinding echoBinding = router.detach(binding.id);
+        if (echoBinding != null)
+        {
+            serverFactory.detach(echoBinding);
+        }
     }
 
     @Override
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Echo END extension, laid out by the reaktor extension convention as the {@code int32} type id of
+ * {@code echo} followed by the {@link EchoChecksum} of the payload sent on the stream.
+ */
+public final class EchoEndEx
+{
+    public static final int FIELD_OFFSET_TYPE_ID = 0;
+    public static final int FIELD_OFFSET_CHECKSUM = FIELD_OFFSET_TYPE_ID + Integer.BYTES;
+    public static final int SIZEOF = FIELD_OFFSET_CHECKSUM + EchoChecksum.LENGTH;
+
+    private DirectBuffer buffer;
+    private int offset;
+
+    public EchoEndEx tryWrap(
+        DirectBuffer buffer,
+        int offset,
+        int maxLimit)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+
+        return maxLimit - offset == SIZEOF ? this : null;
+    }
+
+    public int typeId()
+    {
+        return buffer.getInt(offset + FIELD_OFFSET_TYPE_ID);
+    }
+
+    public int checksum()
+    {
+        return buffer.getInt(offset + FIELD_OFFSET_CHECKSUM);
+    }
+
+    public static int encode(
+        MutableDirectBuffer buffer,
+        int offset,
+        int typeId,
+        int checksum)
+    {
+        buffer.putInt(offset + FIELD_OFFSET_TYPE_ID, typeId);
+        buffer.putInt(offset + FIELD_OFFSET_CHECKSUM, checksum);
+
+        return SIZEOF;
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.agrona.BitUtil.isPowerOfTwo;
+
+import java.util.function.LongConsumer;
+
+import org.agrona.DirectBuffer;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ChallengeFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+
+/**
+ * Sampled frame mix and power-of-two DATA payload size distribution, kept in plain arrays
+ * and published in batches to reaktor accumulators named {@code echo.sampled.<type>.frames},
+ * {@code echo.sampled.<type>.bytes} and {@code echo.payload.size.le.<upper bound>}, each sample
+ * weighted by the sampling interval. Replaces the exact per-type counters when enabled.
+ */
+public final class EchoFrameStats
+{
+    static final int SIZE_BUCKET_COUNT = Integer.SIZE;
+    static final int PUBLISH_SAMPLES = 1024;
+
+    private static final int TYPE_DATA = 0;
+    private static final int TYPE_FLUSH = 1;
+    private static final int TYPE_CHALLENGE = 2;
+    private static final int TYPE_END = 3;
+    private static final int TYPE_ABORT = 4;
+    private static final int TYPE_RESET = 5;
+    private static final int TYPE_WINDOW = 6;
+    private static final int TYPE_BEGIN = 7;
+    private static final int TYPE_NONE = -1;
+    private static final String[] TYPE_NAMES =
+        { "data", "flush", "challenge", "end", "abort", "reset", "window", "begin" };
+
+    private final long[] types;
+    private final long[] bytes;
+    private final long[] sizes;
+    private final LongConsumer[] typeCounters;
+    private final LongConsumer[] bytesCounters;
+    private final LongConsumer[] sizeCounters;
+    private final int sampleMask;
+    private final int weight;
+
+    private int frames;
+    private int samples;
+
+    public EchoFrameStats(
+        ElektronContext context,
+        long bindingId,
+        int sample)
+    {
+        if (!isPowerOfTwo(sample))
+        {
+            throw new IllegalArgumentException(
+                String.format("stats sample %d is not a power of two", sample));
+        }
+
+        this.weight = sample;
+        this.sampleMask = weight - 1;
+        this.types = new long[TYPE_NAMES.length];
+        this.bytes = new long[TYPE_NAMES.length];
+        this.sizes = new long[SIZE_BUCKET_COUNT];
+        this.typeCounters = new LongConsumer[TYPE_NAMES.length];
+        this.bytesCounters = new LongConsumer[TYPE_NAMES.length];
+        this.sizeCounters = new LongConsumer[SIZE_BUCKET_COUNT];
+
+        for (int index = 0; index < TYPE_NAMES.length; index++)
+        {
+            final String typeName = String.format("echo.sampled.%s.frames", TYPE_NAMES[index]);
+            final String bytesName = String.format("echo.sampled.%s.bytes", TYPE_NAMES[index]);
+            typeCounters[index] = context.supplyAccumulator(bindingId, typeName);
+            bytesCounters[index] = context.supplyAccumulator(bindingId, bytesName);
+        }
+
+        for (int index = 0; index < SIZE_BUCKET_COUNT; index++)
+        {
+            final String bucketName = String.format("echo.payload.size.le.%d", upperBound(index));
+            sizeCounters[index] = context.supplyAccumulator(bindingId, bucketName);
+        }
+    }
+
+    public void record(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if ((++frames & sampleMask) == 0)
+        {
+            final int type = typeIndex(msgTypeId);
+
+            if (type != TYPE_NONE)
+            {
+                types[type]++;
+                bytes[type] += length;
+
+                if (type == TYPE_DATA)
+                {
+                    sizes[sizeIndex(buffer.getInt(index + DataFW.FIELD_OFFSET_LENGTH))]++;
+                }
+
+                if (++samples == PUBLISH_SAMPLES)
+                {
+                    publish();
+                }
+            }
+        }
+    }
+
+    public void publish()
+    {
+        for (int index = 0; index < types.length; index++)
+        {
+            if (types[index] != 0L)
+            {
+                typeCounters[index].accept(types[index] * weight);
+                bytesCounters[index].accept(bytes[index] * weight);
+                types[index] = 0L;
+                bytes[index] = 0L;
+            }
+        }
+
+        for (int index = 0; index < sizes.length; index++)
+        {
+            if (sizes[index] != 0L)
+            {
+                sizeCounters[index].accept(sizes[index] * weight);
+                sizes[index] = 0L;
+            }
+        }
+
+        samples = 0;
+    }
+
+    static int sizeIndex(
+        int length)
+    {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(length, 0));
+    }
+
+    static long upperBound(
+        int index)
+    {
+        return (1L << index) - 1L;
+    }
+
+    private static int typeIndex(
+        int msgTypeId)
+    {
+        int type;
+
+        switch (msgTypeId)
+        {
+        case BeginFW.TYPE_ID:
+            type = TYPE_BEGIN;
+            break;
+        case DataFW.TYPE_ID:
+            type = TYPE_DATA;
+            break;
+        case FlushFW.TYPE_ID:
+            type = TYPE_FLUSH;
+            break;
+        case ChallengeFW.TYPE_ID:
+            type = TYPE_CHALLENGE;
+            break;
+        case EndFW.TYPE_ID:
+            type = TYPE_END;
+            break;
+        case AbortFW.TYPE_ID:
+            type = TYPE_ABORT;
+            break;
+        case ResetFW.TYPE_ID:
+            type = TYPE_RESET;
+            break;
+        case WindowFW.TYPE_ID:
+            type = TYPE_WINDOW;
+            break;
+        default:
+            type = TYPE_NONE;
+            break;
+        }
+
+        return type;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import java.util.function.LongSupplier;
+
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+
+/**
+ * Log-linear histogram with a fixed set of non-cumulative buckets, each backed by a reaktor counter
+ * named {@code <name>.bucket.<lower bound>-<upper bound>} so that external readers can scrape it.
+ * Values beyond the largest magnitude are counted in a dedicated overflow bucket.
+ */
+public final class EchoHistogram
+{
+    static final int SUB_BUCKET_BITS = 1;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int MAX_MAGNITUDE = 36;
+    static final int OVERFLOW_INDEX = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    static final int BUCKET_COUNT = OVERFLOW_INDEX + 1;
+
+    private final LongSupplier[] buckets;
+
+    public EchoHistogram(
+        ElektronContext context,
+        long bindingId,
+        String name)
+    {
+        this.buckets = new LongSupplier[BUCKET_COUNT];
+
+        for (int index = 0; index < BUCKET_COUNT; index++)
+        {
+            final String bucketName = String.format("%s.bucket.%d-%d", name, lowerBound(index), upperBound(index));
+            buckets[index] = context.supplyCounter(bindingId, bucketName);
+        }
+    }
+
+    public void record(
+        long value)
+    {
+        buckets[index(value)].getAsLong();
+    }
+
+    static int index(
+        long value)
+    {
+        int index;
+
+        if (value < SUB_BUCKET_COUNT)
+        {
+            index = (int) Math.max(value, 0L);
+        }
+        else if (value >>> (MAX_MAGNITUDE + 1) != 0L)
+        {
+            index = OVERFLOW_INDEX;
+        }
+        else
+        {
+            final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            final int subBucket = (int) ((value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+            index = (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+        }
+
+        return index;
+    }
+
+    static long lowerBound(
+        int index)
+    {
+        long lowerBound;
+
+        if (index < SUB_BUCKET_COUNT)
+        {
+            lowerBound = index;
+        }
+        else if (index == OVERFLOW_INDEX)
+        {
+            lowerBound = 1L << (MAX_MAGNITUDE + 1);
+        }
+        else
+        {
+            final int magnitude = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+            final int subBucket = index % SUB_BUCKET_COUNT;
+            lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << (magnitude - SUB_BUCKET_BITS);
+        }
+
+        return lowerBound;
+    }
+
+    static long upperBound(
+        int index)
+    {
+        long upperBound;
+
+        if (index < SUB_BUCKET_COUNT)
+        {
+            upperBound = index;
+        }
+        else if (index == OVERFLOW_INDEX)
+        {
+            upperBound = Long.MAX_VALUE;
+        }
+        else
+        {
+            final int magnitude = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+            upperBound = lowerBound(index) + (1L << (magnitude - SUB_BUCKET_BITS)) - 1L;
+        }
+
+        return upperBound;
+    }
+}
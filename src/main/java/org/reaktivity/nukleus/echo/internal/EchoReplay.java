@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static java.nio.channels.FileChannel.MapMode.PRIVATE;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+
+/**
+ * Index of the initial stream {@code DATA} and {@code FLUSH} frames recorded by {@link EchoCapture}, in capture order.
+ * <p>
+ * The capture file is mapped privately, so replayed frame headers can be rewritten in place without
+ * copying the frame and without modifying the file or the mappings of other elektrons.
+ */
+public final class EchoReplay implements AutoCloseable
+{
+    private static final long INITIAL_STREAM_MASK = 0x01L;
+    private static final int INITIAL_FRAMES = 64;
+
+    private final EchoCaptureReader reader;
+    private final MutableDirectBuffer buffer;
+
+    private int[] typeIds;
+    private int[] indexes;
+    private int[] lengths;
+    private long[] timestamps;
+    private int frames;
+
+    public EchoReplay(
+        Path path)
+    {
+        this.reader = new EchoCaptureReader(path, PRIVATE);
+        this.buffer = reader.buffer();
+        this.typeIds = new int[INITIAL_FRAMES];
+        this.indexes = new int[INITIAL_FRAMES];
+        this.lengths = new int[INITIAL_FRAMES];
+        this.timestamps = new long[INITIAL_FRAMES];
+
+        reader.forEach(this::onFrame);
+    }
+
+    public MutableDirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    public int frames()
+    {
+        return frames;
+    }
+
+    public int typeId(
+        int frame)
+    {
+        return typeIds[frame];
+    }
+
+    public int index(
+        int frame)
+    {
+        return indexes[frame];
+    }
+
+    public int length(
+        int frame)
+    {
+        return lengths[frame];
+    }
+
+    public long offsetNanos(
+        int frame)
+    {
+        return timestamps[frame] - timestamps[0];
+    }
+
+    @Override
+    public void close()
+    {
+        reader.close();
+    }
+
+    private void onFrame(
+        int msgTypeId,
+        long timestamp,
+        long streamId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if ((streamId & INITIAL_STREAM_MASK) != 0L &&
+            (msgTypeId == DataFW.TYPE_ID || msgTypeId == FlushFW.TYPE_ID))
+        {
+            if (frames == typeIds.length)
+            {
+                final int newLength = frames << 1;
+                typeIds = Arrays.copyOf(typeIds, newLength);
+                indexes = Arrays.copyOf(indexes, newLength);
+                lengths = Arrays.copyOf(lengths, newLength);
+                timestamps = Arrays.copyOf(timestamps, newLength);
+            }
+
+            typeIds[frames] = msgTypeId;
+            indexes[frames] = index;
+            lengths[frames] = length;
+            timestamps[frames] = timestamp;
+            frames++;
+        }
+    }
+}
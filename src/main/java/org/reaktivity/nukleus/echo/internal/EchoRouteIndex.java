@@ -0,0 +1,108 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.reaktivity.nukleus.echo.internal.config.EchoBinding.NO_ROUTE_ID;
+
+/**
+ * Route conditions of a binding compiled at attach into one lookup table per significant authorization
+ * byte, each entry holding the bitset of conditions satisfied by that byte value, so resolving an
+ * authorization costs at most eight lookups regardless of how many routes or authorizations are seen.
+ */
+public final class EchoRouteIndex
+{
+    static final int CONDITIONS_MAX = Long.SIZE;
+
+    private static final int BYTE_VALUES = 1 << Byte.SIZE;
+
+    private final long[] routeIds;
+    private final long conditions;
+    private final int[] shifts;
+    private final long[][] tables;
+
+    public EchoRouteIndex(
+        long[] authorizations,
+        long[] routeIds)
+    {
+        final int count = routeIds.length;
+
+        if (count > CONDITIONS_MAX)
+        {
+            throw new IllegalArgumentException(
+                String.format("%d route conditions exceeds maximum %d", count, CONDITIONS_MAX));
+        }
+
+        long significant = 0L;
+        for (int index = 0; index < count; index++)
+        {
+            significant |= authorizations[index];
+        }
+
+        final int bytes = Long.SIZE / Byte.SIZE;
+        int tableCount = 0;
+        for (int octet = 0; octet < bytes; octet++)
+        {
+            if ((significant >>> (octet * Byte.SIZE) & 0xffL) != 0L)
+            {
+                tableCount++;
+            }
+        }
+
+        this.routeIds = routeIds;
+        this.conditions = count == CONDITIONS_MAX ? -1L : (1L << count) - 1L;
+        this.shifts = new int[tableCount];
+        this.tables = new long[tableCount][];
+
+        int table = 0;
+        for (int octet = 0; octet < bytes; octet++)
+        {
+            final int shift = octet * Byte.SIZE;
+            if ((significant >>> shift & 0xffL) != 0L)
+            {
+                final long[] entries = new long[BYTE_VALUES];
+                for (int value = 0; value < BYTE_VALUES; value++)
+                {
+                    long satisfied = 0L;
+                    for (int index = 0; index < count; index++)
+                    {
+                        final int required = (int) (authorizations[index] >>> shift) & 0xff;
+                        if ((value & required) == required)
+                        {
+                            satisfied |= 1L << index;
+                        }
+                    }
+                    entries[value] = satisfied;
+                }
+
+                shifts[table] = shift;
+                tables[table] = entries;
+                table++;
+            }
+        }
+    }
+
+    public long resolve(
+        long authorization)
+    {
+        long satisfied = conditions;
+        for (int table = 0; table < tables.length; table++)
+        {
+            satisfied &= tables[table][(int) (authorization >>> shifts[table]) & 0xff];
+        }
+
+        return satisfied != 0L ? routeIds[Long.numberOfTrailingZeros(satisfied)] : NO_ROUTE_ID;
+    }
+}
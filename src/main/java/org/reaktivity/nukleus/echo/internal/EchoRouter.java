@@ -15,35 +15,52 @@
  */
 package org.reaktivity.nukleus.echo.internal;
 
+import static org.reaktivity.nukleus.echo.internal.config.EchoBinding.NO_ROUTE_ID;
+
 import org.agrona.collections.Long2ObjectHashMap;
-import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
 
 public final class EchoRouter
 {
-    private final Long2ObjectHashMap<Binding> bindings;
+    private final Long2ObjectHashMap<EchoBinding> bindings;
+    private final Long2ObjectHashMap<EchoRouteIndex> indexes;
 
     EchoRouter()
     {
         this.bindings = new Long2ObjectHashMap<>();
+        this.indexes = new Long2ObjectHashMap<>();
     }
 
     public void attach(
-        Binding binding)
+        EchoBinding binding)
     {
+        if (binding.routed)
+        {
+            indexes.put(binding.id, new EchoRouteIndex(binding.routeAuthorizations, binding.routeIds));
+        }
         bindings.put(binding.id, binding);
     }
 
-    public Binding resolve(
+    public EchoBinding resolve(
         long routeId,
         long authorization)
     {
-        return bindings.get(routeId);
+        EchoBinding binding = bindings.get(routeId);
+
+        if (binding != null && binding.routed)
+        {
+            final long resolvedId = indexes.get(routeId).resolve(authorization);
+            binding = resolvedId != NO_ROUTE_ID ? bindings.get(resolvedId) : null;
+        }
+
+        return binding;
     }
 
-    public void detach(
+    public EchoBinding detach(
         long routeId)
     {
-        bindings.remove(routeId);
+        indexes.remove(routeId);
+        return bindings.remove(routeId);
     }
 
     @Override
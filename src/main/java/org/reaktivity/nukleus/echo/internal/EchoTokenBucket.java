@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Token bucket of bytes refilled at a fixed rate per second, up to a burst of {@link #BURST_MILLIS}
+ * worth of tokens, computed lazily from the timestamps supplied by the caller.
+ */
+public final class EchoTokenBucket
+{
+    static final long BURST_MILLIS = 100L;
+
+    private static final long NANOS_PER_SECOND = SECONDS.toNanos(1L);
+    private static final long BURST_PER_SECOND = SECONDS.toMillis(1L) / BURST_MILLIS;
+
+    private long rate;
+    private long burst;
+    private long tokens;
+    private long refilledAt;
+
+    public void reset(
+        long rate,
+        long timeNanos)
+    {
+        this.rate = rate;
+        this.burst = Math.max(rate / BURST_PER_SECOND, 1L);
+        this.tokens = burst;
+        this.refilledAt = timeNanos;
+    }
+
+    public long available(
+        long timeNanos)
+    {
+        long available = Long.MAX_VALUE;
+
+        if (rate > 0L)
+        {
+            final long elapsed = Math.min(timeNanos - refilledAt, NANOS_PER_SECOND);
+            final long refill = elapsed * rate / NANOS_PER_SECOND;
+
+            if (refill > 0L)
+            {
+                tokens = Math.min(tokens + refill, burst);
+                refilledAt = tokens == burst ? timeNanos : refilledAt + refill * NANOS_PER_SECOND / rate;
+            }
+
+            available = tokens;
+        }
+
+        return available;
+    }
+
+    public void consume(
+        long amount)
+    {
+        if (rate > 0L)
+        {
+            tokens -= amount;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static java.lang.System.nanoTime;
+import static org.agrona.BitUtil.findNextPositivePowerOfTwo;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+
+/**
+ * Per-elektron frame trace appended to a memory-mapped {@link OneToOneRingBuffer}, one fixed size record
+ * per frame keyed by frame type id, holding the trace id, stream id, {@link System#nanoTime()}, frame length
+ * and whether the frame was received or reflected.
+ * <p>
+ * Only frames whose trace id is sampled are recorded, either one in every power-of-two interval of trace ids
+ * or every trace id with all bits of the configured mask set, so both hops of a traced request are kept.
+ * The sample interval is rounded up to the next power of two, and untraced frames with trace id zero are
+ * never sampled.
+ */
+public final class EchoTrace implements AutoCloseable
+{
+    public static final int PHASE_RECEIVED = 0;
+    public static final int PHASE_REFLECTED = 1;
+
+    public static final int TRACE_ID_OFFSET = 0;
+    public static final int STREAM_ID_OFFSET = TRACE_ID_OFFSET + Long.BYTES;
+    public static final int TIMESTAMP_OFFSET = STREAM_ID_OFFSET + Long.BYTES;
+    public static final int LENGTH_OFFSET = TIMESTAMP_OFFSET + Long.BYTES;
+    public static final int PHASE_OFFSET = LENGTH_OFFSET + Integer.BYTES;
+    public static final int RECORD_LENGTH = PHASE_OFFSET + Integer.BYTES;
+
+    private final MappedByteBuffer mapped;
+    private final RingBuffer ring;
+    private final AtomicBuffer buffer;
+    private final long sampleMask;
+    private final long matchMask;
+
+    public EchoTrace(
+        Path path,
+        int capacity,
+        int sample,
+        long mask)
+    {
+        final File file = path.toFile();
+        IoUtil.ensureDirectoryExists(file.getParentFile(), "trace");
+
+        this.mapped = IoUtil.mapNewFile(file, capacity + TRAILER_LENGTH);
+        this.ring = new OneToOneRingBuffer(new UnsafeBuffer(mapped));
+        this.buffer = ring.buffer();
+        this.sampleMask = findNextPositivePowerOfTwo(Math.max(sample, 1)) - 1L;
+        this.matchMask = mask;
+    }
+
+    public boolean sampled(
+        long traceId)
+    {
+        return traceId != 0L &&
+                (matchMask != 0L
+                    ? (traceId & matchMask) == matchMask
+                    : (traceId & sampleMask) == 0L);
+    }
+
+    public boolean record(
+        int phase,
+        int msgTypeId,
+        DirectBuffer frame,
+        int index,
+        int length)
+    {
+        final int claimIndex = ring.tryClaim(msgTypeId, RECORD_LENGTH);
+
+        if (claimIndex >= 0)
+        {
+            buffer.putLong(claimIndex + TRACE_ID_OFFSET, frame.getLong(index + BeginFW.FIELD_OFFSET_TRACE_ID));
+            buffer.putLong(claimIndex + STREAM_ID_OFFSET, frame.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID));
+            buffer.putLong(claimIndex + TIMESTAMP_OFFSET, nanoTime());
+            buffer.putInt(claimIndex + LENGTH_OFFSET, length);
+            buffer.putInt(claimIndex + PHASE_OFFSET, phase);
+            ring.commit(claimIndex);
+        }
+
+        return claimIndex >= 0;
+    }
+
+    @Override
+    public void close()
+    {
+        IoUtil.unmap(mapped);
+    }
+}
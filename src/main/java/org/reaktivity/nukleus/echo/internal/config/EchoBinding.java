@@ -0,0 +1,291 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.config;
+
+import static java.lang.System.nanoTime;
+import static java.util.Comparator.comparingInt;
+import static org.agrona.BitUtil.isPowerOfTwo;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_CAPTURE;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_CHECKSUM;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_FANOUT;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_IDLE;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_LIMITS;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_LOAD;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_MIRROR;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_RATE;
+import static org.reaktivity.nukleus.echo.internal.EchoCounters.FEATURE_TRACE;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.FANOUT;
+import static org.reaktivity.nukleus.echo.internal.config.EchoMode.REPLAY;
+import static org.reaktivity.reaktor.config.Role.CLIENT;
+import static org.reaktivity.reaktor.nukleus.budget.BudgetCreditor.NO_CREDITOR_INDEX;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.LongArrayList;
+import org.reaktivity.nukleus.echo.internal.EchoCapture;
+import org.reaktivity.nukleus.echo.internal.EchoConfiguration;
+import org.reaktivity.nukleus.echo.internal.EchoCounters;
+import org.reaktivity.nukleus.echo.internal.EchoHistogram;
+import org.reaktivity.nukleus.echo.internal.EchoReplay;
+import org.reaktivity.nukleus.echo.internal.EchoTokenBucket;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.config.Condition;
+import org.reaktivity.reaktor.config.Role;
+import org.reaktivity.reaktor.config.Route;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+
+public final class EchoBinding
+{
+    public static final long NO_ROUTE_ID = 0L;
+
+    public final long id;
+    public final String entry;
+    public final Role kind;
+    public final long exitId;
+    public final EchoMode mode;
+    public final boolean buffered;
+    public final int coalesceLimit;
+    public final long coalesceDelay;
+    public final int sharedBudget;
+    public final boolean latencyTimestamp;
+    public final int streams;
+    public final int payloadSize;
+    public final long rate;
+    public final long streamRateLimit;
+    public final long bindingRateLimit;
+    public final long delay;
+    public final long delayJitter;
+    public final long idleTimeout;
+    public final int maxStreams;
+    public final int maxAuthorizedStreams;
+    public final boolean checksum;
+    public final boolean mirror;
+    public final EchoCounters counters;
+    public final EchoHistogram latency;
+    public final EchoTokenBucket limiter;
+    public final EchoCapture capture;
+    public final EchoReplay replay;
+    public final boolean replayTiming;
+    public final String group;
+    public final Long2LongHashMap authorizedStreams;
+    public final boolean routed;
+    public final long[] routeAuthorizations;
+    public final long[] routeIds;
+
+    public int activeStreams;
+    public long sharedBudgetId;
+    public long sharedCreditorIndex = NO_CREDITOR_INDEX;
+
+    private boolean detached;
+
+    public EchoBinding(
+        Binding binding,
+        EchoConfiguration config,
+        ElektronContext context)
+    {
+        final EchoOptions options = binding.options instanceof EchoOptions
+                ? (EchoOptions) binding.options
+                : EchoOptions.builder().build();
+
+        this.id = binding.id;
+        this.entry = binding.entry;
+        this.kind = binding.kind;
+        this.exitId = binding.exit != null ? binding.exit.id : 0L;
+        this.mode = options.mode != null ? options.mode : config.mode();
+        this.coalesceLimit = options.coalesceLimit != null ? options.coalesceLimit : config.coalesceLimit();
+        this.coalesceDelay = options.coalesceDelay != null ? options.coalesceDelay : config.coalesceDelay();
+        this.delay = options.delay != null ? options.delay : config.delay();
+        this.delayJitter = options.delayJitter != null ? options.delayJitter : config.delayJitter();
+        this.idleTimeout = options.idleTimeout != null ? options.idleTimeout : config.idleTimeout();
+        this.maxStreams = options.maxStreams != null ? options.maxStreams : config.maxStreams();
+        this.maxAuthorizedStreams = options.maxAuthorizedStreams != null
+                ? options.maxAuthorizedStreams
+                : config.maxAuthorizedStreams();
+        this.checksum = options.checksum != null ? options.checksum : config.checksum();
+        this.mirror = (options.mirror != null ? options.mirror : config.mirror()) && exitId != 0L;
+        this.buffered = (options.buffered != null ? options.buffered : config.buffered()) ||
+                coalesceLimit > 0 || delay > 0L || delayJitter > 0L;
+        this.sharedBudget = options.sharedBudget != null ? options.sharedBudget : config.sharedBudget();
+        this.latencyTimestamp = options.latencyTimestamp != null ? options.latencyTimestamp : config.latencyTimestamp();
+        this.streams = options.streams != null ? options.streams : config.clientStreams();
+        this.payloadSize = options.payloadSize != null ? options.payloadSize : config.clientPayloadSize();
+        this.rate = options.rate != null ? options.rate : config.clientRate();
+        this.streamRateLimit = options.streamRateLimit != null ? options.streamRateLimit : config.streamRateLimit();
+        this.bindingRateLimit = options.bindingRateLimit != null ? options.bindingRateLimit : config.bindingRateLimit();
+        final boolean capture = options.capture != null ? options.capture : config.capture();
+        final boolean trace = config.traceSample() > 0 || config.traceMask() != 0L;
+        final int features =
+                (maxStreams > 0 || maxAuthorizedStreams > 0 ? FEATURE_LIMITS : 0) |
+                (idleTimeout > 0L ? FEATURE_IDLE : 0) |
+                (streamRateLimit > 0L || bindingRateLimit > 0L ? FEATURE_RATE : 0) |
+                (kind == CLIENT ? FEATURE_LOAD : 0) |
+                (capture ? FEATURE_CAPTURE : 0) |
+                (checksum ? FEATURE_CHECKSUM : 0) |
+                (mode == FANOUT ? FEATURE_FANOUT : 0) |
+                (mirror ? FEATURE_MIRROR : 0) |
+                (trace ? FEATURE_TRACE : 0);
+        final int captureCapacity = options.captureCapacity != null ? options.captureCapacity : config.captureCapacity();
+        if (capture && !isPowerOfTwo(captureCapacity))
+        {
+            throw new IllegalArgumentException(
+                String.format("captureCapacity %d is not a power of two", captureCapacity));
+        }
+
+        final int statsSample = options.statsSample != null ? options.statsSample : config.statsSample();
+        this.counters = new EchoCounters(context, id, features, statsSample);
+        this.limiter = new EchoTokenBucket();
+        limiter.reset(bindingRateLimit, nanoTime());
+        this.authorizedStreams = new Long2LongHashMap(0L);
+
+        this.capture = capture
+                ? new EchoCapture(capturePath(config, id, context.index()), captureCapacity,
+                        counters.captureFrames, counters.captureDrops)
+                : null;
+
+        final String replay = options.replay != null ? options.replay : config.replay();
+        this.replay = mode == REPLAY && replay != null
+                ? new EchoReplay(config.directory().resolve(replay))
+                : null;
+        this.replayTiming = options.replayTiming != null ? options.replayTiming : config.replayTiming();
+
+        final String group = options.group != null ? options.group : config.group();
+        this.group = group != null ? group : entry;
+
+        final List<Route> routes = new ArrayList<>(binding.routes);
+        routes.sort(comparingInt(r -> r.order));
+
+        final LongArrayList routeAuthorizations = new LongArrayList();
+        final LongArrayList routeIds = new LongArrayList();
+        for (Route route : routes)
+        {
+            if (route.when.isEmpty())
+            {
+                routeAuthorizations.addLong(0L);
+                routeIds.addLong(route.id);
+            }
+
+            for (Condition condition : route.when)
+            {
+                if (condition instanceof EchoCondition)
+                {
+                    routeAuthorizations.addLong(((EchoCondition) condition).authorization);
+                    routeIds.addLong(route.id);
+                }
+            }
+        }
+
+        this.routed = !routes.isEmpty();
+        this.routeAuthorizations = routeAuthorizations.toLongArray();
+        this.routeIds = routeIds.toLongArray();
+
+        final boolean latencyHistogram = options.latencyHistogram != null
+                ? options.latencyHistogram
+                : config.latencyHistogram();
+
+        EchoHistogram latency = null;
+        if (kind == CLIENT)
+        {
+            latency = new EchoHistogram(context, id, "echo.load.rtt.ns");
+        }
+        else if (latencyHistogram)
+        {
+            latency = new EchoHistogram(context, id, "echo.latency.ns");
+        }
+        this.latency = latency;
+    }
+
+    public boolean admitStream(
+        long authorization)
+    {
+        final boolean admitted =
+                (maxStreams == 0 || activeStreams < maxStreams) &&
+                (maxAuthorizedStreams == 0 || authorizedStreams.get(authorization) < maxAuthorizedStreams);
+
+        if (admitted)
+        {
+            activeStreams++;
+            counters.streamsActive.accept(1L);
+
+            if (maxAuthorizedStreams != 0)
+            {
+                authorizedStreams.put(authorization, authorizedStreams.get(authorization) + 1L);
+            }
+        }
+
+        return admitted;
+    }
+
+    public void releaseStream(
+        long authorization)
+    {
+        activeStreams--;
+        counters.streamsActive.accept(-1L);
+
+        if (maxAuthorizedStreams != 0)
+        {
+            final long streams = authorizedStreams.get(authorization) - 1L;
+            if (streams > 0L)
+            {
+                authorizedStreams.put(authorization, streams);
+            }
+            else
+            {
+                authorizedStreams.remove(authorization);
+            }
+        }
+
+        closeIfUnused();
+    }
+
+    public void detach()
+    {
+        detached = true;
+        closeIfUnused();
+    }
+
+    private void closeIfUnused()
+    {
+        if (detached && activeStreams == 0)
+        {
+            if (capture != null)
+            {
+                capture.close();
+            }
+
+            if (replay != null)
+            {
+                replay.close();
+            }
+        }
+    }
+
+    private static Path capturePath(
+        EchoConfiguration config,
+        long bindingId,
+        int index)
+    {
+        return config.directory().resolve("echo").resolve(String.format("capture.%016x.%d", bindingId, index));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s %s %s %s", getClass().getSimpleName(), entry, kind, mode);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.config;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.bind.adapter.JsonbAdapter;
+
+import org.reaktivity.reaktor.config.Condition;
+import org.reaktivity.reaktor.config.ConditionAdapterSpi;
+
+public final class EchoConditionAdapter implements ConditionAdapterSpi, JsonbAdapter<Condition, JsonObject>
+{
+    private static final String AUTHORIZATION_NAME = "authorization";
+
+    @Override
+    public String type()
+    {
+        return "echo";
+    }
+
+    @Override
+    public JsonObject adaptToJson(
+        Condition condition)
+    {
+        EchoCondition echoCondition = (EchoCondition) condition;
+
+        JsonObjectBuilder object = Json.createObjectBuilder();
+
+        if (echoCondition.authorization != 0L)
+        {
+            object.add(AUTHORIZATION_NAME, echoCondition.authorization);
+        }
+
+        return object.build();
+    }
+
+    @Override
+    public Condition adaptFromJson(
+        JsonObject object)
+    {
+        long authorization = object.containsKey(AUTHORIZATION_NAME)
+                ? object.getJsonNumber(AUTHORIZATION_NAME).longValue()
+                : 0L;
+
+        return new EchoCondition(authorization);
+    }
+}
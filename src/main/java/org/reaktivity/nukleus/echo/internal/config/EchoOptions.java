@@ -0,0 +1,291 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.config;
+
+import org.reaktivity.reaktor.config.Options;
+
+public final class EchoOptions extends Options
+{
+    public final EchoMode mode;
+    public final Boolean buffered;
+    public final Integer coalesceLimit;
+    public final Long coalesceDelay;
+    public final Integer sharedBudget;
+    public final Boolean latencyHistogram;
+    public final Boolean latencyTimestamp;
+    public final Integer streams;
+    public final Integer payloadSize;
+    public final Long rate;
+    public final Long streamRateLimit;
+    public final Long bindingRateLimit;
+    public final Long delay;
+    public final Long delayJitter;
+    public final Long idleTimeout;
+    public final Integer maxStreams;
+    public final Integer maxAuthorizedStreams;
+    public final Boolean capture;
+    public final Integer captureCapacity;
+    public final String replay;
+    public final Boolean replayTiming;
+    public final Boolean checksum;
+    public final String group;
+    public final Boolean mirror;
+    public final Integer statsSample;
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    private EchoOptions(
+        Builder builder)
+    {
+        this.mode = builder.mode;
+        this.buffered = builder.buffered;
+        this.coalesceLimit = builder.coalesceLimit;
+        this.coalesceDelay = builder.coalesceDelay;
+        this.sharedBudget = builder.sharedBudget;
+        this.latencyHistogram = builder.latencyHistogram;
+        this.latencyTimestamp = builder.latencyTimestamp;
+        this.streams = builder.streams;
+        this.payloadSize = builder.payloadSize;
+        this.rate = builder.rate;
+        this.streamRateLimit = builder.streamRateLimit;
+        this.bindingRateLimit = builder.bindingRateLimit;
+        this.delay = builder.delay;
+        this.delayJitter = builder.delayJitter;
+        this.idleTimeout = builder.idleTimeout;
+        this.maxStreams = builder.maxStreams;
+        this.maxAuthorizedStreams = builder.maxAuthorizedStreams;
+        this.capture = builder.capture;
+        this.captureCapacity = builder.captureCapacity;
+        this.replay = builder.replay;
+        this.replayTiming = builder.replayTiming;
+        this.checksum = builder.checksum;
+        this.group = builder.group;
+        this.mirror = builder.mirror;
+        this.statsSample = builder.statsSample;
+    }
+
+    public static final class Builder
+    {
+        private EchoMode mode;
+        private Boolean buffered;
+        private Integer coalesceLimit;
+        private Long coalesceDelay;
+        private Integer sharedBudget;
+        private Boolean latencyHistogram;
+        private Boolean latencyTimestamp;
+        private Integer streams;
+        private Integer payloadSize;
+        private Long rate;
+        private Long streamRateLimit;
+        private Long bindingRateLimit;
+        private Long delay;
+        private Long delayJitter;
+        private Long idleTimeout;
+        private Integer maxStreams;
+        private Integer maxAuthorizedStreams;
+        private Boolean capture;
+        private Integer captureCapacity;
+        private String replay;
+        private Boolean replayTiming;
+        private Boolean checksum;
+        private String group;
+        private Boolean mirror;
+        private Integer statsSample;
+
+        public Builder mode(
+            EchoMode mode)
+        {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder buffered(
+            Boolean buffered)
+        {
+            this.buffered = buffered;
+            return this;
+        }
+
+        public Builder coalesceLimit(
+            Integer coalesceLimit)
+        {
+            this.coalesceLimit = coalesceLimit;
+            return this;
+        }
+
+        public Builder coalesceDelay(
+            Long coalesceDelay)
+        {
+            this.coalesceDelay = coalesceDelay;
+            return this;
+        }
+
+        public Builder sharedBudget(
+            Integer sharedBudget)
+        {
+            this.sharedBudget = sharedBudget;
+            return this;
+        }
+
+        public Builder latencyHistogram(
+            Boolean latencyHistogram)
+        {
+            this.latencyHistogram = latencyHistogram;
+            return this;
+        }
+
+        public Builder latencyTimestamp(
+            Boolean latencyTimestamp)
+        {
+            this.latencyTimestamp = latencyTimestamp;
+            return this;
+        }
+
+        public Builder streams(
+            Integer streams)
+        {
+            this.streams = streams;
+            return this;
+        }
+
+        public Builder payloadSize(
+            Integer payloadSize)
+        {
+            this.payloadSize = payloadSize;
+            return this;
+        }
+
+        public Builder rate(
+            Long rate)
+        {
+            this.rate = rate;
+            return this;
+        }
+
+        public Builder streamRateLimit(
+            Long streamRateLimit)
+        {
+            this.streamRateLimit = streamRateLimit;
+            return this;
+        }
+
+        public Builder bindingRateLimit(
+            Long bindingRateLimit)
+        {
+            this.bindingRateLimit = bindingRateLimit;
+            return this;
+        }
+
+        public Builder delay(
+            Long delay)
+        {
+            this.delay = delay;
+            return this;
+        }
+
+        public Builder delayJitter(
+            Long delayJitter)
+        {
+            this.delayJitter = delayJitter;
+            return this;
+        }
+
+        public Builder idleTimeout(
+            Long idleTimeout)
+        {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder maxStreams(
+            Integer maxStreams)
+        {
+            this.maxStreams = maxStreams;
+            return this;
+        }
+
+        public Builder maxAuthorizedStreams(
+            Integer maxAuthorizedStreams)
+        {
+            this.maxAuthorizedStreams = maxAuthorizedStreams;
+            return this;
+        }
+
+        public Builder capture(
+            Boolean capture)
+        {
+            this.capture = capture;
+            return this;
+        }
+
+        public Builder captureCapacity(
+            Integer captureCapacity)
+        {
+            this.captureCapacity = captureCapacity;
+            return this;
+        }
+
+        public Builder replay(
+            String replay)
+        {
+            this.replay = replay;
+            return this;
+        }
+
+        public Builder replayTiming(
+            Boolean replayTiming)
+        {
+            this.replayTiming = replayTiming;
+            return this;
+        }
+
+        public Builder checksum(
+            Boolean checksum)
+        {
+            this.checksum = checksum;
+            return this;
+        }
+
+        public Builder group(
+            String group)
+        {
+            this.group = group;
+            return this;
+        }
+
+        public Builder mirror(
+            Boolean mirror)
+        {
+            this.mirror = mirror;
+            return this;
+        }
+
+        public Builder statsSample(
+            Integer statsSample)
+        {
+            this.statsSample = statsSample;
+            return this;
+        }
+
+        public EchoOptions build()
+        {
+            return new EchoOptions(this);
+        }
+    }
+}
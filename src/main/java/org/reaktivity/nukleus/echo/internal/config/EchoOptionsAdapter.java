@@ -0,0 +1,217 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.config;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.bind.adapter.JsonbAdapter;
+
+import org.reaktivity.reaktor.config.Options;
+import org.reaktivity.reaktor.config.OptionsAdapterSpi;
+
+public final class EchoOptionsAdapter implements OptionsAdapterSpi, JsonbAdapter<Options, JsonObject>
+{
+    private static final String MODE_NAME = "mode";
+    private static final String BUFFERED_NAME = "buffered";
+    private static final String COALESCE_LIMIT_NAME = "coalesceLimit";
+    private static final String COALESCE_DELAY_NAME = "coalesceDelay";
+    private static final String SHARED_BUDGET_NAME = "sharedBudget";
+    private static final String LATENCY_HISTOGRAM_NAME = "latencyHistogram";
+    private static final String LATENCY_TIMESTAMP_NAME = "latencyTimestamp";
+    private static final String STREAMS_NAME = "streams";
+    private static final String PAYLOAD_SIZE_NAME = "payloadSize";
+    private static final String RATE_NAME = "rate";
+    private static final String STREAM_RATE_LIMIT_NAME = "streamRateLimit";
+    private static final String BINDING_RATE_LIMIT_NAME = "bindingRateLimit";
+    private static final String DELAY_NAME = "delay";
+    private static final String DELAY_JITTER_NAME = "delayJitter";
+    private static final String IDLE_TIMEOUT_NAME = "idleTimeout";
+    private static final String MAX_STREAMS_NAME = "maxStreams";
+    private static final String MAX_AUTHORIZED_STREAMS_NAME = "maxAuthorizedStreams";
+    private static final String CAPTURE_NAME = "capture";
+    private static final String CAPTURE_CAPACITY_NAME = "captureCapacity";
+    private static final String REPLAY_NAME = "replay";
+    private static final String REPLAY_TIMING_NAME = "replayTiming";
+    private static final String CHECKSUM_NAME = "checksum";
+    private static final String GROUP_NAME = "group";
+    private static final String MIRROR_NAME = "mirror";
+    private static final String STATS_SAMPLE_NAME = "statsSample";
+
+    @Override
+    public String type()
+    {
+        return "echo";
+    }
+
+    @Override
+    public JsonObject adaptToJson(
+        Options options)
+    {
+        EchoOptions echoOptions = (EchoOptions) options;
+
+        JsonObjectBuilder object = Json.createObjectBuilder();
+
+        if (echoOptions.mode != null)
+        {
+            object.add(MODE_NAME, echoOptions.mode.name().toLowerCase());
+        }
+
+        addBoolean(object, BUFFERED_NAME, echoOptions.buffered);
+        addInteger(object, COALESCE_LIMIT_NAME, echoOptions.coalesceLimit);
+        addLong(object, COALESCE_DELAY_NAME, echoOptions.coalesceDelay);
+        addInteger(object, SHARED_BUDGET_NAME, echoOptions.sharedBudget);
+        addBoolean(object, LATENCY_HISTOGRAM_NAME, echoOptions.latencyHistogram);
+        addBoolean(object, LATENCY_TIMESTAMP_NAME, echoOptions.latencyTimestamp);
+        addInteger(object, STREAMS_NAME, echoOptions.streams);
+        addInteger(object, PAYLOAD_SIZE_NAME, echoOptions.payloadSize);
+        addLong(object, RATE_NAME, echoOptions.rate);
+        addLong(object, STREAM_RATE_LIMIT_NAME, echoOptions.streamRateLimit);
+        addLong(object, BINDING_RATE_LIMIT_NAME, echoOptions.bindingRateLimit);
+        addLong(object, DELAY_NAME, echoOptions.delay);
+        addLong(object, DELAY_JITTER_NAME, echoOptions.delayJitter);
+        addLong(object, IDLE_TIMEOUT_NAME, echoOptions.idleTimeout);
+        addInteger(object, MAX_STREAMS_NAME, echoOptions.maxStreams);
+        addInteger(object, MAX_AUTHORIZED_STREAMS_NAME, echoOptions.maxAuthorizedStreams);
+        addBoolean(object, CAPTURE_NAME, echoOptions.capture);
+        addInteger(object, CAPTURE_CAPACITY_NAME, echoOptions.captureCapacity);
+        addString(object, REPLAY_NAME, echoOptions.replay);
+        addBoolean(object, REPLAY_TIMING_NAME, echoOptions.replayTiming);
+        addBoolean(object, CHECKSUM_NAME, echoOptions.checksum);
+        addString(object, GROUP_NAME, echoOptions.group);
+        addBoolean(object, MIRROR_NAME, echoOptions.mirror);
+        addInteger(object, STATS_SAMPLE_NAME, echoOptions.statsSample);
+
+        return object.build();
+    }
+
+    @Override
+    public Options adaptFromJson(
+        JsonObject object)
+    {
+        EchoMode mode = object.containsKey(MODE_NAME)
+                ? EchoMode.valueOf(object.getString(MODE_NAME).toUpperCase())
+                : null;
+
+        return EchoOptions.builder()
+                .mode(mode)
+                .buffered(getBoolean(object, BUFFERED_NAME))
+                .coalesceLimit(getInteger(object, COALESCE_LIMIT_NAME))
+                .coalesceDelay(getLong(object, COALESCE_DELAY_NAME))
+                .sharedBudget(getInteger(object, SHARED_BUDGET_NAME))
+                .latencyHistogram(getBoolean(object, LATENCY_HISTOGRAM_NAME))
+                .latencyTimestamp(getBoolean(object, LATENCY_TIMESTAMP_NAME))
+                .streams(getInteger(object, STREAMS_NAME))
+                .payloadSize(getInteger(object, PAYLOAD_SIZE_NAME))
+                .rate(getLong(object, RATE_NAME))
+                .streamRateLimit(getLong(object, STREAM_RATE_LIMIT_NAME))
+                .bindingRateLimit(getLong(object, BINDING_RATE_LIMIT_NAME))
+                .delay(getLong(object, DELAY_NAME))
+                .delayJitter(getLong(object, DELAY_JITTER_NAME))
+                .idleTimeout(getLong(object, IDLE_TIMEOUT_NAME))
+                .maxStreams(getInteger(object, MAX_STREAMS_NAME))
+                .maxAuthorizedStreams(getInteger(object, MAX_AUTHORIZED_STREAMS_NAME))
+                .capture(getBoolean(object, CAPTURE_NAME))
+                .captureCapacity(getInteger(object, CAPTURE_CAPACITY_NAME))
+                .replay(getString(object, REPLAY_NAME))
+                .replayTiming(getBoolean(object, REPLAY_TIMING_NAME))
+                .checksum(getBoolean(object, CHECKSUM_NAME))
+                .group(getString(object, GROUP_NAME))
+                .mirror(getBoolean(object, MIRROR_NAME))
+                .statsSample(getInteger(object, STATS_SAMPLE_NAME))
+                .build();
+    }
+
+    private static void addBoolean(
+        JsonObjectBuilder object,
+        String name,
+        Boolean value)
+    {
+        if (value != null)
+        {
+            object.add(name, value);
+        }
+    }
+
+    private static void addInteger(
+        JsonObjectBuilder object,
+        String name,
+        Integer value)
+    {
+        if (value != null)
+        {
+            object.add(name, value);
+        }
+    }
+
+    private static void addLong(
+        JsonObjectBuilder object,
+        String name,
+        Long value)
+    {
+        if (value != null)
+        {
+            object.add(name, value);
+        }
+    }
+
+    private static void addString(
+        JsonObjectBuilder object,
+        String name,
+        String value)
+    {
+        if (value != null)
+        {
+            object.add(name, value);
+        }
+    }
+
+    private static Boolean getBoolean(
+        JsonObject object,
+        String name)
+    {
+        return object.containsKey(name)
+                ? object.getBoolean(name)
+                : null;
+    }
+
+    private static Integer getInteger(
+        JsonObject object,
+        String name)
+    {
+        return object.containsKey(name)
+                ? object.getInt(name)
+                : null;
+    }
+
+    private static Long getLong(
+        JsonObject object,
+        String name)
+    {
+        return object.containsKey(name)
+                ? object.getJsonNumber(name).longValue()
+                : null;
+    }
+
+    private static String getString(
+        JsonObject object,
+        String name)
+    {
+        return object.containsKey(name)
+                ? object.getString(name)
+                : null;
+    }
+}
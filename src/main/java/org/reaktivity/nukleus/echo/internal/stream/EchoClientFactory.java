@@ -0,0 +1,715 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.initialClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.initialOpened;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyOpened;
+import static org.reaktivity.reaktor.nukleus.budget.BudgetDebitor.NO_DEBITOR_INDEX;
+import static org.reaktivity.reaktor.nukleus.concurrent.Signaler.NO_CANCEL_ID;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.EchoConfiguration;
+import org.reaktivity.nukleus.echo.internal.EchoCounters;
+import org.reaktivity.nukleus.echo.internal.EchoHistogram;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.budget.BudgetDebitor;
+import org.reaktivity.reaktor.nukleus.concurrent.Signaler;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public final class EchoClientFactory implements StreamFactory
+{
+    private static final int FLAGS_COMPLETE = 0x03;
+    private static final int SIGNAL_TICK = 1;
+    private static final long TICK_MILLIS = 1L;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final int SENT_CAPACITY = 256;
+    private static final int REPLY_MAXIMUM = 64 * 1024;
+    private static final OctetsFW EMPTY_OCTETS = new OctetsFW().wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+
+    private final BeginFW beginRO = new BeginFW();
+    private final DataFW dataRO = new DataFW();
+    private final EndFW endRO = new EndFW();
+    private final AbortFW abortRO = new AbortFW();
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+    private final AbortFW.Builder abortRW = new AbortFW.Builder();
+
+    private final ResetFW resetRO = new ResetFW();
+    private final WindowFW windowRO = new WindowFW();
+
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final MutableDirectBuffer writeBuffer;
+    private final Signaler signaler;
+    private final LongUnaryOperator supplyInitialId;
+    private final LongUnaryOperator supplyReplyId;
+    private final LongSupplier supplyTraceId;
+    private final LongFunction<BudgetDebitor> supplyDebitor;
+    private final StreamFactory streamFactory;
+    private final Long2ObjectHashMap<EchoLoad> loads;
+
+    public EchoClientFactory(
+        EchoConfiguration config,
+        ElektronContext context)
+    {
+        this.writeBuffer = requireNonNull(context.writeBuffer());
+        this.signaler = context.signaler();
+        this.supplyInitialId = context::supplyInitialId;
+        this.supplyReplyId = context::supplyReplyId;
+        this.supplyTraceId = context::supplyTraceId;
+        this.supplyDebitor = context::supplyDebitor;
+        this.streamFactory = context.streamFactory();
+        this.loads = new Long2ObjectHashMap<>();
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        return null;
+    }
+
+    public void attach(
+        EchoBinding binding)
+    {
+        final EchoLoad load = new EchoLoad(binding);
+        loads.put(binding.id, load);
+        load.start();
+    }
+
+    public void detach(
+        long bindingId)
+    {
+        final EchoLoad load = loads.remove(bindingId);
+
+        if (load != null)
+        {
+            load.stop();
+        }
+    }
+
+    private final class EchoLoad
+    {
+        private final IntConsumer ticker = this::onTick;
+        private final long exitId;
+        private final EchoCounters counters;
+        private final EchoHistogram latency;
+        private final int payloadSize;
+        private final long rate;
+        private final MutableDirectBuffer pattern;
+        private final EchoClient[] clients;
+
+        private long tickId = NO_CANCEL_ID;
+        private long tickedAt;
+        private long credit;
+        private int next;
+
+        private EchoLoad(
+            EchoBinding binding)
+        {
+            this.exitId = binding.exitId;
+            this.counters = binding.counters;
+            this.latency = binding.latency;
+            this.payloadSize = binding.payloadSize;
+            this.rate = binding.rate;
+            this.pattern = new UnsafeBuffer(ByteBuffer.allocateDirect(Math.max(payloadSize, 1)));
+            this.clients = new EchoClient[binding.streams];
+
+            for (int index = 0; index < payloadSize; index++)
+            {
+                pattern.putByte(index, (byte) index);
+            }
+
+            for (int index = 0; index < clients.length; index++)
+            {
+                clients[index] = new EchoClient(this);
+            }
+        }
+
+        private void start()
+        {
+            tickedAt = currentTimeMillis();
+            tickId = signaler.signalAt(tickedAt, SIGNAL_TICK, ticker);
+        }
+
+        private void stop()
+        {
+            if (tickId != NO_CANCEL_ID)
+            {
+                signaler.cancel(tickId);
+                tickId = NO_CANCEL_ID;
+            }
+
+            final long traceId = supplyTraceId.getAsLong();
+            for (int index = 0; index < clients.length; index++)
+            {
+                clients[index].cleanup(traceId);
+            }
+        }
+
+        private void onTick(
+            int signalId)
+        {
+            final long now = currentTimeMillis();
+
+            if (rate != 0L)
+            {
+                final long creditMax = Math.max(rate * TICK_MILLIS, MILLIS_PER_SECOND);
+                credit = Math.min(credit + rate * (now - tickedAt), creditMax);
+            }
+            tickedAt = now;
+
+            for (int count = 0; count < clients.length; count++)
+            {
+                final EchoClient client = clients[(next + count) % clients.length];
+
+                if (closed(client.state))
+                {
+                    client.open();
+                }
+                else
+                {
+                    client.pump();
+                }
+            }
+            next = clients.length != 0 ? (next + 1) % clients.length : 0;
+
+            tickId = signaler.signalAt(now + TICK_MILLIS, SIGNAL_TICK, ticker);
+        }
+
+        private boolean available()
+        {
+            return rate == 0L || credit >= MILLIS_PER_SECOND;
+        }
+
+        private void consume()
+        {
+            if (rate != 0L)
+            {
+                credit -= MILLIS_PER_SECOND;
+            }
+        }
+    }
+
+    private final class EchoClient
+    {
+        private final MessageConsumer handler = this::onMessage;
+        private final LongConsumer initialFlusher = this::onInitialBudgetAvailable;
+        private final long[] sentAt = new long[SENT_CAPACITY];
+        private final EchoLoad load;
+
+        private MessageConsumer receiver;
+        private long initialId;
+        private long replyId;
+        private int state = closeInitial(closeReply(0));
+
+        private long initialSeq;
+        private long initialAck;
+        private int initialMax;
+        private int initialPad;
+        private long initialBudgetId;
+        private BudgetDebitor initialDebitor;
+        private long initialDebitorIndex = NO_DEBITOR_INDEX;
+
+        private long replySeq;
+        private long replyAck;
+        private int replyMax;
+        private int replyPosition;
+
+        private long sent;
+        private long echoed;
+        private long echoedBytes;
+        private boolean pumping;
+
+        private EchoClient(
+            EchoLoad load)
+        {
+            this.load = load;
+        }
+
+        private void open()
+        {
+            initialId = supplyInitialId.applyAsLong(load.exitId);
+            replyId = supplyReplyId.applyAsLong(initialId);
+            state = 0;
+
+            initialSeq = 0L;
+            initialAck = 0L;
+            initialMax = 0;
+            initialPad = 0;
+            initialBudgetId = 0L;
+
+            replySeq = 0L;
+            replyAck = 0L;
+            replyMax = 0;
+            replyPosition = 0;
+
+            sent = 0L;
+            echoed = 0L;
+            echoedBytes = 0L;
+
+            final long traceId = supplyTraceId.getAsLong();
+            final BeginFW begin = beginRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                    .routeId(load.exitId)
+                    .streamId(initialId)
+                    .sequence(initialSeq)
+                    .acknowledge(initialAck)
+                    .maximum(initialMax)
+                    .traceId(traceId)
+                    .authorization(0L)
+                    .affinity(0L)
+                    .build();
+
+            receiver = streamFactory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), handler);
+
+            if (receiver != null)
+            {
+                state = openInitial(state);
+                receiver.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+            }
+            else
+            {
+                state = closeInitial(closeReply(state));
+            }
+        }
+
+        private void onMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (!closed(state) && (streamId == initialId || streamId == replyId))
+            {
+                load.counters.recordFrame(msgTypeId, buffer, index, length);
+                onStreamMessage(msgTypeId, buffer, index, length);
+            }
+        }
+
+        private void onStreamMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            switch (msgTypeId)
+            {
+            case BeginFW.TYPE_ID:
+                final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+                onReplyBegin(begin);
+                break;
+            case DataFW.TYPE_ID:
+                final DataFW data = dataRO.wrap(buffer, index, index + length);
+                onReplyData(data);
+                break;
+            case EndFW.TYPE_ID:
+                final EndFW end = endRO.wrap(buffer, index, index + length);
+                onReplyEnd(end);
+                break;
+            case AbortFW.TYPE_ID:
+                final AbortFW abort = abortRO.wrap(buffer, index, index + length);
+                onReplyAbort(abort);
+                break;
+            case ResetFW.TYPE_ID:
+                final ResetFW reset = resetRO.wrap(buffer, index, index + length);
+                onInitialReset(reset);
+                break;
+            case WindowFW.TYPE_ID:
+                final WindowFW window = windowRO.wrap(buffer, index, index + length);
+                onInitialWindow(window);
+                break;
+            default:
+                // ignore
+                break;
+            }
+        }
+
+        private void onReplyBegin(
+            final BeginFW begin)
+        {
+            final long sequence = begin.sequence();
+            final long acknowledge = begin.acknowledge();
+            final long traceId = begin.traceId();
+
+            replySeq = sequence;
+            replyAck = acknowledge;
+            replyMax = REPLY_MAXIMUM;
+            state = openReply(state);
+
+            doWindow(receiver, load.exitId, replyId, replySeq, replyAck, replyMax, traceId, 0L, 0);
+        }
+
+        private void onReplyData(
+            final DataFW data)
+        {
+            final long sequence = data.sequence();
+            final long traceId = data.traceId();
+            final int reserved = data.reserved();
+            final OctetsFW payload = data.payload();
+
+            replySeq = sequence + reserved;
+
+            if (payload != null)
+            {
+                verifyReplyData(payload);
+            }
+
+            final long echoedMax = load.payloadSize > 0 ? echoedBytes / load.payloadSize : echoed + 1;
+            while (echoed < sent && echoed < echoedMax)
+            {
+                load.latency.record(nanoTime() - sentAt[(int) (echoed % SENT_CAPACITY)]);
+                echoed++;
+            }
+
+            if (replySeq - replyAck >= replyMax >> 1)
+            {
+                replyAck = replySeq;
+                doWindow(receiver, load.exitId, replyId, replySeq, replyAck, replyMax, traceId, 0L, 0);
+            }
+        }
+
+        private void onReplyEnd(
+            final EndFW end)
+        {
+            final long traceId = end.traceId();
+
+            state = closeReply(state);
+            doInitialEnd(traceId);
+        }
+
+        private void onReplyAbort(
+            final AbortFW abort)
+        {
+            final long traceId = abort.traceId();
+
+            state = closeReply(state);
+            doInitialAbort(traceId);
+        }
+
+        private void onInitialReset(
+            final ResetFW reset)
+        {
+            final long traceId = reset.traceId();
+
+            state = closeInitial(state);
+            releaseInitialDebitor();
+            doReplyReset(traceId);
+        }
+
+        private void onInitialWindow(
+            final WindowFW window)
+        {
+            final long acknowledge = window.acknowledge();
+            final int maximum = window.maximum();
+            final long budgetId = window.budgetId();
+            final int padding = window.padding();
+
+            initialAck = acknowledge;
+            initialMax = maximum;
+            initialPad = padding;
+            initialBudgetId = budgetId;
+
+            if (initialBudgetId != 0L && initialDebitorIndex == NO_DEBITOR_INDEX)
+            {
+                initialDebitor = supplyDebitor.apply(initialBudgetId);
+                initialDebitorIndex = initialDebitor.acquire(initialBudgetId, initialId, initialFlusher);
+            }
+
+            pump();
+        }
+
+        private void onInitialBudgetAvailable(
+            long traceId)
+        {
+            pump();
+        }
+
+        private void pump()
+        {
+            if (!pumping)
+            {
+                final int reserved = load.payloadSize + initialPad;
+                final long initialSeqMax = initialAck + initialMax;
+
+                pumping = true;
+                while (pumping && initialOpened(state) && !initialClosed(state) &&
+                       sent - echoed < SENT_CAPACITY &&
+                       initialSeq + reserved <= initialSeqMax &&
+                       load.available())
+                {
+                    final long traceId = supplyTraceId.getAsLong();
+                    final long sequence = initialSeq;
+
+                    pumping = initialDebitorIndex == NO_DEBITOR_INDEX ||
+                        initialDebitor.claim(traceId, initialDebitorIndex, initialId, reserved, reserved, 0) == reserved;
+
+                    if (pumping)
+                    {
+                        load.consume();
+                        sentAt[(int) (sent % SENT_CAPACITY)] = nanoTime();
+                        initialSeq += reserved;
+                        sent++;
+
+                        doData(receiver, load.exitId, initialId, sequence, initialAck, initialMax, traceId,
+                                initialBudgetId, reserved, load.pattern, 0, load.payloadSize);
+
+                        load.counters.loadFramesSent.getAsLong();
+                        load.counters.loadBytesSent.accept(load.payloadSize);
+                    }
+                }
+                pumping = false;
+            }
+        }
+
+        private void verifyReplyData(
+            final OctetsFW payload)
+        {
+            final DirectBuffer buffer = payload.buffer();
+            final int offset = payload.offset();
+            final int length = payload.sizeof();
+
+            boolean matched = load.payloadSize > 0 || length == 0;
+            for (int index = 0; matched && index < length; index++)
+            {
+                matched = buffer.getByte(offset + index) == load.pattern.getByte(replyPosition);
+                replyPosition = replyPosition + 1 < load.payloadSize ? replyPosition + 1 : 0;
+            }
+
+            if (!matched)
+            {
+                load.counters.loadMismatches.getAsLong();
+            }
+
+            echoedBytes += length;
+            load.counters.loadBytesReceived.accept(length);
+        }
+
+        private void cleanup(
+            long traceId)
+        {
+            doInitialAbort(traceId);
+            doReplyReset(traceId);
+        }
+
+        private void doInitialEnd(
+            long traceId)
+        {
+            if (initialOpened(state) && !initialClosed(state))
+            {
+                state = closeInitial(state);
+                doEnd(receiver, load.exitId, initialId, initialSeq, initialAck, initialMax, traceId);
+            }
+
+            releaseInitialDebitor();
+        }
+
+        private void doInitialAbort(
+            long traceId)
+        {
+            if (initialOpened(state) && !initialClosed(state))
+            {
+                state = closeInitial(state);
+                doAbort(receiver, load.exitId, initialId, initialSeq, initialAck, initialMax, traceId);
+            }
+
+            releaseInitialDebitor();
+        }
+
+        private void doReplyReset(
+            long traceId)
+        {
+            if (replyOpened(state) && !replyClosed(state))
+            {
+                doReset(receiver, load.exitId, replyId, replySeq, replyAck, replyMax, traceId);
+            }
+
+            state = closeReply(state);
+        }
+
+        private void releaseInitialDebitor()
+        {
+            if (initialDebitorIndex != NO_DEBITOR_INDEX)
+            {
+                initialDebitor.release(initialDebitorIndex, initialId);
+                initialDebitor = null;
+                initialDebitorIndex = NO_DEBITOR_INDEX;
+            }
+        }
+    }
+
+    private void doData(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long budgetId,
+        final int reserved,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        final DataFW data = dataRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(0L)
+                .flags(FLAGS_COMPLETE)
+                .budgetId(budgetId)
+                .reserved(reserved)
+                .payload(buffer, offset, length)
+                .build();
+
+        receiver.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+    }
+
+    private void doEnd(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId)
+    {
+        final EndFW end = endRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(0L)
+                .extension(EMPTY_OCTETS)
+                .build();
+
+        receiver.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+    }
+
+    private void doAbort(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId)
+    {
+        final AbortFW abort = abortRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(0L)
+                .extension(EMPTY_OCTETS)
+                .build();
+
+        receiver.accept(abort.typeId(), abort.buffer(), abort.offset(), abort.sizeof());
+    }
+
+    private void doReset(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId)
+    {
+        final ResetFW reset = resetRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(0L)
+                .extension(EMPTY_OCTETS)
+                .build();
+
+        sender.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+    }
+
+    private void doWindow(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long budgetId,
+        final int padding)
+    {
+        final WindowFW window = windowRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .budgetId(budgetId)
+                .padding(padding)
+                .build();
+
+        sender.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+}
@@ -0,0 +1,473 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.abort;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.aborted;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.initialClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyClosed;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.EchoCounters;
+import org.reaktivity.nukleus.echo.internal.EchoRouter;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+
+public final class EchoDiscardFactory implements EchoStreamFactory
+{
+    private static final OctetsFW EMPTY_OCTETS = new OctetsFW().wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+
+    private final BeginFW beginRO = new BeginFW();
+    private final DataFW dataRO = new DataFW();
+    private final EndFW endRO = new EndFW();
+    private final AbortFW abortRO = new AbortFW();
+    private final FlushFW flushRO = new FlushFW();
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+    private final AbortFW.Builder abortRW = new AbortFW.Builder();
+
+    private final ResetFW resetRO = new ResetFW();
+
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final MutableDirectBuffer writeBuffer;
+    private final LongUnaryOperator supplyReplyId;
+    private final int initialWindow;
+    private final EchoRouter router;
+    private final Deque<EchoDiscard> discards;
+
+    public EchoDiscardFactory(
+        ElektronContext context,
+        EchoRouter router)
+    {
+        this.writeBuffer = requireNonNull(context.writeBuffer());
+        this.supplyReplyId = context::supplyReplyId;
+        this.initialWindow = context.bufferPool().slotCapacity();
+        this.router = router;
+        this.discards = new ArrayDeque<>();
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final EchoBinding binding = router.resolve(begin.routeId(), begin.authorization());
+
+        return binding != null ? newStream(binding, msgTypeId, buffer, index, length, sender) : null;
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        EchoBinding binding,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final long routeId = begin.routeId();
+        final long initialId = begin.streamId();
+        final long authorization = begin.authorization();
+
+        MessageConsumer newStream = null;
+
+        if (binding.admitStream(authorization))
+        {
+            final EchoDiscard discard = discards.isEmpty() ? new EchoDiscard() : discards.pop();
+            discard.init(sender, routeId, initialId, authorization, binding);
+
+            newStream = discard.handler;
+        }
+        else
+        {
+            binding.counters.streamsRejected.getAsLong();
+            doReset(sender, routeId, initialId, begin.sequence(), begin.acknowledge(), begin.maximum(),
+                    begin.traceId(), authorization, EMPTY_OCTETS);
+        }
+
+        return newStream;
+    }
+
+    private final class EchoDiscard
+    {
+        private final MessageConsumer handler = this::onMessage;
+
+        private MessageConsumer receiver;
+        private EchoBinding binding;
+        private EchoCounters counters;
+        private long routeId;
+        private long authorization;
+        private long initialId;
+        private long replyId;
+        private int state;
+
+        private long initialSeq;
+        private long initialAck;
+        private long initialCredited;
+
+        private void init(
+            MessageConsumer receiver,
+            long routeId,
+            long initialId,
+            long authorization,
+            EchoBinding binding)
+        {
+            this.receiver = receiver;
+            this.binding = binding;
+            this.counters = binding.counters;
+            this.routeId = routeId;
+            this.initialId = initialId;
+            this.authorization = authorization;
+            this.replyId = supplyReplyId.applyAsLong(initialId);
+            this.state = 0;
+
+            this.initialSeq = 0L;
+            this.initialAck = 0L;
+            this.initialCredited = 0L;
+        }
+
+        private void onMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (!closed(state) && (streamId == initialId || streamId == replyId))
+            {
+                counters.recordFrame(msgTypeId, buffer, index, length);
+                onStreamMessage(msgTypeId, buffer, index, length);
+
+                if (closed(state))
+                {
+                    final LongSupplier streamsClosed = aborted(state) ? counters.streamsAborted : counters.streamsClosed;
+                    streamsClosed.getAsLong();
+                    binding.releaseStream(authorization);
+                    binding = null;
+                    counters = null;
+                    discards.push(this);
+                }
+            }
+        }
+
+        private void onStreamMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            switch (msgTypeId)
+            {
+            case BeginFW.TYPE_ID:
+                final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+                onBegin(begin);
+                break;
+            case DataFW.TYPE_ID:
+                final DataFW data = dataRO.wrap(buffer, index, index + length);
+                onData(data);
+                break;
+            case EndFW.TYPE_ID:
+                final EndFW end = endRO.wrap(buffer, index, index + length);
+                onEnd(end);
+                break;
+            case AbortFW.TYPE_ID:
+                final AbortFW abort = abortRO.wrap(buffer, index, index + length);
+                onAbort(abort);
+                break;
+            case FlushFW.TYPE_ID:
+                final FlushFW flush = flushRO.wrap(buffer, index, index + length);
+                onFlush(flush);
+                break;
+            case ResetFW.TYPE_ID:
+                final ResetFW reset = resetRO.wrap(buffer, index, index + length);
+                onReset(reset);
+                break;
+            default:
+                // ignore
+                break;
+            }
+        }
+
+        private void onBegin(
+            final BeginFW begin)
+        {
+            final long sequence = begin.sequence();
+            final long acknowledge = begin.acknowledge();
+            final long traceId = begin.traceId();
+            final long authorization = begin.authorization();
+            final long affinity = begin.affinity();
+
+            initialSeq = sequence;
+            initialAck = acknowledge;
+            initialCredited = acknowledge;
+
+            state = openInitial(state);
+            counters.streamsOpened.getAsLong();
+
+            doBegin(receiver, routeId, replyId, 0L, 0L, 0, traceId, authorization, affinity, EMPTY_OCTETS);
+            state = openReply(state);
+
+            doInitialWindow(traceId);
+        }
+
+        private void onData(
+            final DataFW data)
+        {
+            final long sequence = data.sequence();
+            final long traceId = data.traceId();
+            final int reserved = data.reserved();
+
+            initialSeq = sequence + reserved;
+            initialAck = initialSeq;
+
+            doInitialWindow(traceId);
+        }
+
+        private void onFlush(
+            final FlushFW flush)
+        {
+            final long sequence = flush.sequence();
+            final long traceId = flush.traceId();
+            final int reserved = flush.reserved();
+
+            initialSeq = sequence + reserved;
+            initialAck = initialSeq;
+
+            doInitialWindow(traceId);
+        }
+
+        private void onEnd(
+            final EndFW end)
+        {
+            final long traceId = end.traceId();
+            final long authorization = end.authorization();
+
+            initialSeq = end.sequence();
+            state = closeInitial(state);
+
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                doEnd(receiver, routeId, replyId, 0L, 0L, 0, traceId, authorization, EMPTY_OCTETS);
+            }
+        }
+
+        private void onAbort(
+            final AbortFW abort)
+        {
+            final long traceId = abort.traceId();
+            final long authorization = abort.authorization();
+
+            initialSeq = abort.sequence();
+            state = closeInitial(state);
+
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                state = abort(state);
+                doAbort(receiver, routeId, replyId, 0L, 0L, 0, traceId, authorization, EMPTY_OCTETS);
+            }
+        }
+
+        private void onReset(
+            final ResetFW reset)
+        {
+            final long traceId = reset.traceId();
+            final long authorization = reset.authorization();
+
+            state = closeReply(state);
+            state = abort(state);
+
+            if (!initialClosed(state))
+            {
+                state = closeInitial(state);
+                doReset(receiver, routeId, initialId, initialSeq, initialAck, initialWindow, traceId,
+                        authorization, EMPTY_OCTETS);
+            }
+        }
+
+        private void doInitialWindow(
+            final long traceId)
+        {
+            final long credit = initialAck + initialWindow - initialCredited;
+            if (credit > 0L)
+            {
+                counters.windowCredit.accept(credit);
+                initialCredited += credit;
+            }
+
+            doWindow(receiver, routeId, initialId, initialSeq, initialAck, initialWindow, traceId, 0L, 0);
+        }
+    }
+
+    private void doBegin(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final long affinity,
+        final OctetsFW extension)
+    {
+        final BeginFW begin = beginRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .affinity(affinity)
+                .extension(extension)
+                .build();
+
+        receiver.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+    }
+
+    private void doEnd(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final EndFW end = endRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .extension(extension)
+                .build();
+
+        receiver.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+    }
+
+    private void doAbort(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final AbortFW abort = abortRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .extension(extension)
+                .build();
+
+        receiver.accept(abort.typeId(), abort.buffer(), abort.offset(), abort.sizeof());
+    }
+
+    private void doReset(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final ResetFW reset = resetRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+               .routeId(routeId)
+               .streamId(streamId)
+               .sequence(sequence)
+               .acknowledge(acknowledge)
+               .maximum(maximum)
+               .traceId(traceId)
+               .authorization(authorization)
+               .extension(extension)
+               .build();
+
+        sender.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+    }
+
+    private void doWindow(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long budgetId,
+        final int padding)
+    {
+        final WindowFW window = windowRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .budgetId(budgetId)
+                .padding(padding)
+                .build();
+
+        sender.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+}
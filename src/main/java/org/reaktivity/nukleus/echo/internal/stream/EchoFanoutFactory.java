@@ -0,0 +1,777 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.abort;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.aborted;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.initialClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyOpened;
+import static org.reaktivity.reaktor.nukleus.budget.BudgetDebitor.NO_DEBITOR_INDEX;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.EchoCounters;
+import org.reaktivity.nukleus.echo.internal.EchoRouter;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.budget.BudgetDebitor;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+
+public final class EchoFanoutFactory implements EchoStreamFactory
+{
+    private static final int NO_MEMBER_INDEX = -1;
+    private static final int INITIAL_MEMBERS = 16;
+
+    private static final int FLAGS_FIN = 0x01;
+    private static final int FLAGS_INIT = 0x02;
+    private static final int FLAGS_INCOMPLETE = 0x04;
+
+    private static final int MESSAGE_NONE = 0;
+    private static final int MESSAGE_SENDING = 1;
+    private static final int MESSAGE_SKIPPING = 2;
+    private static final OctetsFW EMPTY_OCTETS = new OctetsFW().wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+
+    private final BeginFW beginRO = new BeginFW();
+    private final DataFW dataRO = new DataFW();
+    private final EndFW endRO = new EndFW();
+    private final AbortFW abortRO = new AbortFW();
+    private final FlushFW flushRO = new FlushFW();
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+    private final AbortFW.Builder abortRW = new AbortFW.Builder();
+
+    private final ResetFW resetRO = new ResetFW();
+    private final WindowFW windowRO = new WindowFW();
+
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final MutableDirectBuffer writeBuffer;
+    private final LongUnaryOperator supplyReplyId;
+    private final LongFunction<BudgetDebitor> supplyDebitor;
+    private final int initialWindow;
+    private final EchoRouter router;
+    private final Map<String, EchoGroup> groupsByName;
+    private final Long2ObjectHashMap<EchoGroup> groups;
+    private final Deque<EchoMember> members;
+
+    public EchoFanoutFactory(
+        ElektronContext context,
+        EchoRouter router)
+    {
+        this.writeBuffer = requireNonNull(context.writeBuffer());
+        this.supplyReplyId = context::supplyReplyId;
+        this.supplyDebitor = context::supplyDebitor;
+        this.initialWindow = context.bufferPool().slotCapacity();
+        this.router = router;
+        this.groupsByName = new HashMap<>();
+        this.groups = new Long2ObjectHashMap<>();
+        this.members = new ArrayDeque<>();
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final EchoBinding binding = router.resolve(begin.routeId(), begin.authorization());
+
+        return binding != null ? newStream(binding, msgTypeId, buffer, index, length, sender) : null;
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        EchoBinding binding,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final long routeId = begin.routeId();
+        final long initialId = begin.streamId();
+        final long authorization = begin.authorization();
+
+        MessageConsumer newStream = null;
+
+        if (binding.admitStream(authorization))
+        {
+            final EchoGroup group = groups.get(binding.id);
+            final EchoMember member = members.isEmpty() ? new EchoMember() : members.pop();
+            member.init(sender, routeId, initialId, authorization, binding, group);
+
+            newStream = member.handler;
+        }
+        else
+        {
+            binding.counters.streamsRejected.getAsLong();
+            doReset(sender, routeId, initialId, begin.sequence(), begin.acknowledge(), begin.maximum(),
+                    begin.traceId(), authorization, EMPTY_OCTETS);
+        }
+
+        return newStream;
+    }
+
+    public void attach(
+        EchoBinding binding)
+    {
+        EchoGroup group = groupsByName.get(binding.group);
+        if (group == null)
+        {
+            group = new EchoGroup(binding.group);
+            groupsByName.put(binding.group, group);
+        }
+
+        group.bindings++;
+        groups.put(binding.id, group);
+    }
+
+    public void detach(
+        long bindingId)
+    {
+        final EchoGroup group = groups.remove(bindingId);
+
+        if (group != null && --group.bindings == 0)
+        {
+            groupsByName.remove(group.name);
+        }
+    }
+
+    private static final class EchoGroup
+    {
+        private final String name;
+
+        private EchoMember[] members = new EchoMember[INITIAL_MEMBERS];
+        private int count;
+        private int bindings;
+
+        private EchoGroup(
+            String name)
+        {
+            this.name = name;
+        }
+
+        private void join(
+            EchoMember member)
+        {
+            if (count == members.length)
+            {
+                members = Arrays.copyOf(members, count << 1);
+            }
+
+            member.memberIndex = count;
+            members[count++] = member;
+        }
+
+        private void leave(
+            EchoMember member)
+        {
+            final int memberIndex = member.memberIndex;
+
+            if (memberIndex != NO_MEMBER_INDEX)
+            {
+                final EchoMember last = members[--count];
+                members[memberIndex] = last;
+                last.memberIndex = memberIndex;
+                members[count] = null;
+                member.memberIndex = NO_MEMBER_INDEX;
+            }
+        }
+    }
+
+    private final class EchoMember
+    {
+        private final MessageConsumer handler = this::onMessage;
+        private final LongConsumer replyFlusher = this::onReplyBudgetAvailable;
+
+        private MessageConsumer receiver;
+        private EchoBinding binding;
+        private EchoCounters counters;
+        private EchoGroup group;
+        private int memberIndex = NO_MEMBER_INDEX;
+        private long routeId;
+        private long authorization;
+        private long initialId;
+        private long replyId;
+        private int state;
+
+        private long initialSeq;
+        private long initialAck;
+        private long initialCredited;
+
+        private long replySeq;
+        private long replyAck;
+        private int replyMax;
+        private int replyPad;
+        private long replyBudgetId;
+        private BudgetDebitor replyDebitor;
+        private long replyDebitorIndex = NO_DEBITOR_INDEX;
+        private int replyMessage;
+        private boolean replyTruncated;
+
+        private void init(
+            MessageConsumer receiver,
+            long routeId,
+            long initialId,
+            long authorization,
+            EchoBinding binding,
+            EchoGroup group)
+        {
+            this.receiver = receiver;
+            this.binding = binding;
+            this.counters = binding.counters;
+            this.group = group;
+            this.routeId = routeId;
+            this.initialId = initialId;
+            this.authorization = authorization;
+            this.replyId = supplyReplyId.applyAsLong(initialId);
+            this.state = 0;
+
+            this.initialSeq = 0L;
+            this.initialAck = 0L;
+            this.initialCredited = 0L;
+
+            this.replySeq = 0L;
+            this.replyAck = 0L;
+            this.replyMax = 0;
+            this.replyPad = 0;
+            this.replyBudgetId = 0L;
+            this.replyMessage = MESSAGE_NONE;
+            this.replyTruncated = false;
+        }
+
+        private void onMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (!closed(state) && (streamId == initialId || streamId == replyId))
+            {
+                counters.recordFrame(msgTypeId, buffer, index, length);
+                onStreamMessage(msgTypeId, buffer, index, length);
+
+                if (closed(state))
+                {
+                    final LongSupplier streamsClosed = aborted(state) ? counters.streamsAborted : counters.streamsClosed;
+                    streamsClosed.getAsLong();
+                    binding.releaseStream(authorization);
+                    binding = null;
+                    counters = null;
+                    group = null;
+                    members.push(this);
+                }
+            }
+        }
+
+        private void onStreamMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            switch (msgTypeId)
+            {
+            case BeginFW.TYPE_ID:
+                final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+                onBegin(begin);
+                break;
+            case DataFW.TYPE_ID:
+                final DataFW data = dataRO.wrap(buffer, index, index + length);
+                onData(data);
+                break;
+            case EndFW.TYPE_ID:
+                final EndFW end = endRO.wrap(buffer, index, index + length);
+                onEnd(end);
+                break;
+            case AbortFW.TYPE_ID:
+                final AbortFW abort = abortRO.wrap(buffer, index, index + length);
+                onAbort(abort);
+                break;
+            case FlushFW.TYPE_ID:
+                final FlushFW flush = flushRO.wrap(buffer, index, index + length);
+                onFlush(flush);
+                break;
+            case ResetFW.TYPE_ID:
+                final ResetFW reset = resetRO.wrap(buffer, index, index + length);
+                onReset(reset);
+                break;
+            case WindowFW.TYPE_ID:
+                final WindowFW window = windowRO.wrap(buffer, index, index + length);
+                onWindow(window);
+                break;
+            default:
+                // ignore
+                break;
+            }
+        }
+
+        private void onBegin(
+            final BeginFW begin)
+        {
+            final long sequence = begin.sequence();
+            final long acknowledge = begin.acknowledge();
+            final long traceId = begin.traceId();
+            final long authorization = begin.authorization();
+            final long affinity = begin.affinity();
+
+            initialSeq = sequence;
+            initialAck = acknowledge;
+            initialCredited = acknowledge;
+
+            state = openInitial(state);
+            counters.streamsOpened.getAsLong();
+
+            doBegin(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, affinity, EMPTY_OCTETS);
+            state = openReply(state);
+            group.join(this);
+
+            doInitialWindow(traceId);
+        }
+
+        private void onData(
+            final DataFW data)
+        {
+            final long sequence = data.sequence();
+            final long traceId = data.traceId();
+            final int reserved = data.reserved();
+
+            initialSeq = sequence + reserved;
+            initialAck = initialSeq;
+
+            doFanoutData(data);
+            doInitialWindow(traceId);
+        }
+
+        private void onFlush(
+            final FlushFW flush)
+        {
+            final long sequence = flush.sequence();
+            final long traceId = flush.traceId();
+            final int reserved = flush.reserved();
+
+            initialSeq = sequence + reserved;
+            initialAck = initialSeq;
+
+            doInitialWindow(traceId);
+        }
+
+        private void onEnd(
+            final EndFW end)
+        {
+            final long traceId = end.traceId();
+            final long authorization = end.authorization();
+
+            initialSeq = end.sequence();
+            state = closeInitial(state);
+
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                doEnd(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, EMPTY_OCTETS);
+            }
+
+            cleanupReply();
+        }
+
+        private void onAbort(
+            final AbortFW abort)
+        {
+            final long traceId = abort.traceId();
+            final long authorization = abort.authorization();
+
+            initialSeq = abort.sequence();
+            state = closeInitial(state);
+
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                state = abort(state);
+                doAbort(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, EMPTY_OCTETS);
+            }
+
+            cleanupReply();
+        }
+
+        private void onReset(
+            final ResetFW reset)
+        {
+            final long traceId = reset.traceId();
+            final long authorization = reset.authorization();
+
+            state = closeReply(state);
+            state = abort(state);
+
+            if (!initialClosed(state))
+            {
+                state = closeInitial(state);
+                doReset(receiver, routeId, initialId, initialSeq, initialAck, initialWindow, traceId,
+                        authorization, EMPTY_OCTETS);
+            }
+
+            cleanupReply();
+        }
+
+        private void onWindow(
+            final WindowFW window)
+        {
+            final long acknowledge = window.acknowledge();
+            final int maximum = window.maximum();
+            final long budgetId = window.budgetId();
+            final int padding = window.padding();
+
+            replyAck = acknowledge;
+            replyMax = maximum;
+            replyPad = padding;
+            replyBudgetId = budgetId;
+
+            if (replyBudgetId != 0L && replyDebitorIndex == NO_DEBITOR_INDEX)
+            {
+                replyDebitor = supplyDebitor.apply(replyBudgetId);
+                replyDebitorIndex = replyDebitor.acquire(replyBudgetId, replyId, replyFlusher);
+            }
+        }
+
+        private void onReplyBudgetAvailable(
+            long traceId)
+        {
+            // slow members skip rather than buffer, so nothing is pending
+        }
+
+        private void doFanoutData(
+            final DataFW data)
+        {
+            final OctetsFW payload = data.payload();
+            final int payloadLength = payload != null ? payload.sizeof() : 0;
+            final long traceId = data.traceId();
+            final int flags = data.flags();
+
+            final DataFW fanout = dataRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                    .routeId(routeId)
+                    .streamId(replyId)
+                    .sequence(0L)
+                    .acknowledge(0L)
+                    .maximum(0)
+                    .traceId(traceId)
+                    .authorization(0L)
+                    .flags(flags)
+                    .budgetId(0L)
+                    .reserved(payloadLength)
+                    .payload(payload)
+                    .extension(data.extension())
+                    .build();
+
+            final int length = fanout.sizeof();
+            final EchoMember[] recipients = group.members;
+            final int count = group.count;
+
+            for (int index = 0; index < count; index++)
+            {
+                recipients[index].doReplyFanout(traceId, flags, payloadLength, length);
+            }
+        }
+
+        private void doReplyFanout(
+            final long traceId,
+            final int flags,
+            final int payloadLength,
+            final int length)
+        {
+            final boolean init = (flags & FLAGS_INIT) != 0;
+
+            if (init)
+            {
+                if (replyTruncated)
+                {
+                    replyTruncated = !doReplyIncomplete(traceId, length);
+                }
+
+                replyMessage = replyTruncated ? MESSAGE_SKIPPING : MESSAGE_SENDING;
+            }
+            else if (replyMessage == MESSAGE_NONE)
+            {
+                replyMessage = MESSAGE_SKIPPING;
+            }
+
+            final int reserved = payloadLength + replyPad;
+
+            if (replyMessage == MESSAGE_SENDING && claimReply(traceId, reserved))
+            {
+                writeBuffer.putLong(DataFW.FIELD_OFFSET_ROUTE_ID, routeId);
+                writeBuffer.putLong(DataFW.FIELD_OFFSET_STREAM_ID, replyId);
+                writeBuffer.putLong(DataFW.FIELD_OFFSET_SEQUENCE, replySeq);
+                writeBuffer.putLong(DataFW.FIELD_OFFSET_ACKNOWLEDGE, replyAck);
+                writeBuffer.putInt(DataFW.FIELD_OFFSET_MAXIMUM, replyMax);
+                writeBuffer.putLong(DataFW.FIELD_OFFSET_AUTHORIZATION, authorization);
+                writeBuffer.putLong(DataFW.FIELD_OFFSET_BUDGET_ID, replyBudgetId);
+                writeBuffer.putInt(DataFW.FIELD_OFFSET_RESERVED, reserved);
+
+                receiver.accept(DataFW.TYPE_ID, writeBuffer, 0, length);
+
+                replySeq += reserved;
+                counters.fanoutDelivered.getAsLong();
+            }
+            else
+            {
+                replyTruncated |= replyMessage == MESSAGE_SENDING && !init;
+                replyMessage = MESSAGE_SKIPPING;
+                counters.fanoutSkipped.getAsLong();
+            }
+
+            if ((flags & FLAGS_FIN) != 0)
+            {
+                replyMessage = MESSAGE_NONE;
+            }
+        }
+
+        private boolean doReplyIncomplete(
+            final long traceId,
+            final int offset)
+        {
+            final boolean claimed = claimReply(traceId, replyPad);
+
+            if (claimed)
+            {
+                final DataFW incomplete = dataRW.wrap(writeBuffer, offset, writeBuffer.capacity())
+                        .routeId(routeId)
+                        .streamId(replyId)
+                        .sequence(replySeq)
+                        .acknowledge(replyAck)
+                        .maximum(replyMax)
+                        .traceId(traceId)
+                        .authorization(authorization)
+                        .flags(FLAGS_FIN | FLAGS_INCOMPLETE)
+                        .budgetId(replyBudgetId)
+                        .reserved(replyPad)
+                        .payload(EMPTY_OCTETS)
+                        .build();
+
+                receiver.accept(incomplete.typeId(), incomplete.buffer(), incomplete.offset(), incomplete.sizeof());
+
+                replySeq += replyPad;
+            }
+
+            return claimed;
+        }
+
+        private boolean claimReply(
+            final long traceId,
+            final int reserved)
+        {
+            return replyOpened(state) && !replyClosed(state) &&
+                reserved <= replyAck + replyMax - replySeq &&
+                claimReplyBudget(traceId, reserved, reserved) == reserved;
+        }
+
+        private int claimReplyBudget(
+            final long traceId,
+            final int minimum,
+            final int maximum)
+        {
+            return replyDebitorIndex != NO_DEBITOR_INDEX
+                ? replyDebitor.claim(traceId, replyDebitorIndex, replyId, minimum, maximum, 0)
+                : maximum;
+        }
+
+        private void cleanupReply()
+        {
+            group.leave(this);
+
+            if (replyDebitorIndex != NO_DEBITOR_INDEX)
+            {
+                replyDebitor.release(replyDebitorIndex, replyId);
+                replyDebitor = null;
+                replyDebitorIndex = NO_DEBITOR_INDEX;
+            }
+        }
+
+        private void doInitialWindow(
+            final long traceId)
+        {
+            final long credit = initialAck + initialWindow - initialCredited;
+            if (credit > 0L)
+            {
+                counters.windowCredit.accept(credit);
+                initialCredited += credit;
+            }
+
+            doWindow(receiver, routeId, initialId, initialSeq, initialAck, initialWindow, traceId, 0L, 0);
+        }
+    }
+
+    private void doBegin(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final long affinity,
+        final OctetsFW extension)
+    {
+        final BeginFW begin = beginRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .affinity(affinity)
+                .extension(extension)
+                .build();
+
+        receiver.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+    }
+
+    private void doEnd(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final EndFW end = endRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .extension(extension)
+                .build();
+
+        receiver.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+    }
+
+    private void doAbort(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final AbortFW abort = abortRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .extension(extension)
+                .build();
+
+        receiver.accept(abort.typeId(), abort.buffer(), abort.offset(), abort.sizeof());
+    }
+
+    private void doReset(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final ResetFW reset = resetRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+               .routeId(routeId)
+               .streamId(streamId)
+               .sequence(sequence)
+               .acknowledge(acknowledge)
+               .maximum(maximum)
+               .traceId(traceId)
+               .authorization(authorization)
+               .extension(extension)
+               .build();
+
+        sender.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+    }
+
+    private void doWindow(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long budgetId,
+        final int padding)
+    {
+        final WindowFW window = windowRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .budgetId(budgetId)
+                .padding(padding)
+                .build();
+
+        sender.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+}
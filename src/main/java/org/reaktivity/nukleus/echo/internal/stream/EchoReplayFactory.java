@@ -0,0 +1,802 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.abort;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.aborted;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.initialClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyOpened;
+import static org.reaktivity.reaktor.nukleus.budget.BudgetDebitor.NO_DEBITOR_INDEX;
+import static org.reaktivity.reaktor.nukleus.concurrent.Signaler.NO_CANCEL_ID;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.EchoCounters;
+import org.reaktivity.nukleus.echo.internal.EchoReplay;
+import org.reaktivity.nukleus.echo.internal.EchoRouter;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.SignalFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.budget.BudgetDebitor;
+import org.reaktivity.reaktor.nukleus.concurrent.Signaler;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+
+public final class EchoReplayFactory implements EchoStreamFactory
+{
+    private static final int SIGNAL_REPLAY_DUE = 1;
+    private static final int FLAGS_FIN = 0x01;
+    private static final int FLAGS_INIT = 0x02;
+    private static final OctetsFW EMPTY_OCTETS = new OctetsFW().wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+
+    private final BeginFW beginRO = new BeginFW();
+    private final DataFW dataRO = new DataFW();
+    private final EndFW endRO = new EndFW();
+    private final AbortFW abortRO = new AbortFW();
+    private final FlushFW flushRO = new FlushFW();
+    private final SignalFW signalRO = new SignalFW();
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+    private final AbortFW.Builder abortRW = new AbortFW.Builder();
+
+    private final ResetFW resetRO = new ResetFW();
+    private final WindowFW windowRO = new WindowFW();
+
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final MutableDirectBuffer writeBuffer;
+    private final LongUnaryOperator supplyReplyId;
+    private final LongFunction<BudgetDebitor> supplyDebitor;
+    private final Signaler signaler;
+    private final int initialWindow;
+    private final EchoRouter router;
+    private final Deque<EchoReplayer> replayers;
+
+    public EchoReplayFactory(
+        ElektronContext context,
+        EchoRouter router)
+    {
+        this.writeBuffer = requireNonNull(context.writeBuffer());
+        this.supplyReplyId = context::supplyReplyId;
+        this.supplyDebitor = context::supplyDebitor;
+        this.signaler = context.signaler();
+        this.initialWindow = context.bufferPool().slotCapacity();
+        this.router = router;
+        this.replayers = new ArrayDeque<>();
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final EchoBinding binding = router.resolve(begin.routeId(), begin.authorization());
+
+        return binding != null ? newStream(binding, msgTypeId, buffer, index, length, sender) : null;
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        EchoBinding binding,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final long routeId = begin.routeId();
+        final long initialId = begin.streamId();
+        final long authorization = begin.authorization();
+
+        MessageConsumer newStream = null;
+
+        if (binding.admitStream(authorization))
+        {
+            final EchoReplayer replayer = replayers.isEmpty() ? new EchoReplayer() : replayers.pop();
+            replayer.init(sender, routeId, initialId, authorization, binding);
+
+            newStream = replayer.handler;
+        }
+        else
+        {
+            binding.counters.streamsRejected.getAsLong();
+            doReset(sender, routeId, initialId, begin.sequence(), begin.acknowledge(), begin.maximum(),
+                    begin.traceId(), authorization, EMPTY_OCTETS);
+        }
+
+        return newStream;
+    }
+
+    private final class EchoReplayer
+    {
+        private final MessageConsumer handler = this::onMessage;
+        private final LongConsumer replyFlusher = this::onReplyBudgetAvailable;
+
+        private MessageConsumer receiver;
+        private EchoBinding binding;
+        private EchoCounters counters;
+        private EchoReplay replay;
+        private boolean replayTiming;
+        private long routeId;
+        private long authorization;
+        private long initialId;
+        private long replyId;
+        private int state;
+
+        private long initialSeq;
+        private long initialAck;
+        private long initialCredited;
+
+        private long replySeq;
+        private long replyAck;
+        private int replyMax;
+        private int replyPad;
+        private long replyBudgetId;
+        private BudgetDebitor replyDebitor;
+        private long replyDebitorIndex = NO_DEBITOR_INDEX;
+
+        private int replayFrame;
+        private int replayFrames;
+        private int replayFragment;
+        private long replayStarted;
+        private long replayDueId = NO_CANCEL_ID;
+
+        private void init(
+            MessageConsumer receiver,
+            long routeId,
+            long initialId,
+            long authorization,
+            EchoBinding binding)
+        {
+            this.receiver = receiver;
+            this.binding = binding;
+            this.counters = binding.counters;
+            this.replay = binding.replay;
+            this.replayTiming = binding.replayTiming;
+            this.routeId = routeId;
+            this.initialId = initialId;
+            this.authorization = authorization;
+            this.replyId = supplyReplyId.applyAsLong(initialId);
+            this.state = 0;
+
+            this.initialSeq = 0L;
+            this.initialAck = 0L;
+            this.initialCredited = 0L;
+
+            this.replySeq = 0L;
+            this.replyAck = 0L;
+            this.replyMax = 0;
+            this.replyPad = 0;
+            this.replyBudgetId = 0L;
+
+            this.replayFrame = 0;
+            this.replayFrames = replay != null ? replay.frames() : 0;
+            this.replayFragment = 0;
+            this.replayStarted = 0L;
+        }
+
+        private void onMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (!closed(state) && (streamId == initialId || streamId == replyId))
+            {
+                counters.recordFrame(msgTypeId, buffer, index, length);
+                onStreamMessage(msgTypeId, buffer, index, length);
+                recycleIfClosed();
+            }
+        }
+
+        private void recycleIfClosed()
+        {
+            if (closed(state) && counters != null)
+            {
+                final LongSupplier streamsClosed = aborted(state) ? counters.streamsAborted : counters.streamsClosed;
+                streamsClosed.getAsLong();
+                binding.releaseStream(authorization);
+                binding = null;
+                counters = null;
+                replay = null;
+                replayers.push(this);
+            }
+        }
+
+        private void onStreamMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            switch (msgTypeId)
+            {
+            case BeginFW.TYPE_ID:
+                final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+                onBegin(begin);
+                break;
+            case DataFW.TYPE_ID:
+                final DataFW data = dataRO.wrap(buffer, index, index + length);
+                onData(data);
+                break;
+            case EndFW.TYPE_ID:
+                final EndFW end = endRO.wrap(buffer, index, index + length);
+                onEnd(end);
+                break;
+            case AbortFW.TYPE_ID:
+                final AbortFW abort = abortRO.wrap(buffer, index, index + length);
+                onAbort(abort);
+                break;
+            case FlushFW.TYPE_ID:
+                final FlushFW flush = flushRO.wrap(buffer, index, index + length);
+                onFlush(flush);
+                break;
+            case ResetFW.TYPE_ID:
+                final ResetFW reset = resetRO.wrap(buffer, index, index + length);
+                onReset(reset);
+                break;
+            case WindowFW.TYPE_ID:
+                final WindowFW window = windowRO.wrap(buffer, index, index + length);
+                onWindow(window);
+                break;
+            case SignalFW.TYPE_ID:
+                final SignalFW signal = signalRO.wrap(buffer, index, index + length);
+                onSignal(signal);
+                break;
+            default:
+                // ignore
+                break;
+            }
+        }
+
+        private void onBegin(
+            final BeginFW begin)
+        {
+            final long sequence = begin.sequence();
+            final long acknowledge = begin.acknowledge();
+            final long traceId = begin.traceId();
+            final long authorization = begin.authorization();
+            final long affinity = begin.affinity();
+
+            initialSeq = sequence;
+            initialAck = acknowledge;
+            initialCredited = acknowledge;
+
+            state = openInitial(state);
+            counters.streamsOpened.getAsLong();
+
+            doBegin(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, affinity, EMPTY_OCTETS);
+            state = openReply(state);
+            replayStarted = nanoTime();
+
+            doInitialWindow(traceId);
+        }
+
+        private void onData(
+            final DataFW data)
+        {
+            final long sequence = data.sequence();
+            final long traceId = data.traceId();
+            final int reserved = data.reserved();
+
+            initialSeq = sequence + reserved;
+            initialAck = initialSeq;
+
+            doInitialWindow(traceId);
+        }
+
+        private void onFlush(
+            final FlushFW flush)
+        {
+            final long sequence = flush.sequence();
+            final long traceId = flush.traceId();
+            final int reserved = flush.reserved();
+
+            initialSeq = sequence + reserved;
+            initialAck = initialSeq;
+
+            doInitialWindow(traceId);
+        }
+
+        private void onEnd(
+            final EndFW end)
+        {
+            final long traceId = end.traceId();
+            final long authorization = end.authorization();
+
+            initialSeq = end.sequence();
+            state = closeInitial(state);
+
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                doEnd(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, EMPTY_OCTETS);
+            }
+
+            cleanupReply();
+        }
+
+        private void onAbort(
+            final AbortFW abort)
+        {
+            final long traceId = abort.traceId();
+            final long authorization = abort.authorization();
+
+            initialSeq = abort.sequence();
+            state = closeInitial(state);
+
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                state = abort(state);
+                doAbort(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, EMPTY_OCTETS);
+            }
+
+            cleanupReply();
+        }
+
+        private void onReset(
+            final ResetFW reset)
+        {
+            final long traceId = reset.traceId();
+            final long authorization = reset.authorization();
+
+            state = closeReply(state);
+            state = abort(state);
+
+            if (!initialClosed(state))
+            {
+                state = closeInitial(state);
+                doReset(receiver, routeId, initialId, initialSeq, initialAck, initialWindow, traceId,
+                        authorization, EMPTY_OCTETS);
+            }
+
+            cleanupReply();
+        }
+
+        private void onWindow(
+            final WindowFW window)
+        {
+            final long acknowledge = window.acknowledge();
+            final int maximum = window.maximum();
+            final long traceId = window.traceId();
+            final long budgetId = window.budgetId();
+            final int padding = window.padding();
+
+            replyAck = acknowledge;
+            replyMax = maximum;
+            replyPad = padding;
+            replyBudgetId = budgetId;
+
+            if (replyBudgetId != 0L && replyDebitorIndex == NO_DEBITOR_INDEX)
+            {
+                replyDebitor = supplyDebitor.apply(replyBudgetId);
+                replyDebitorIndex = replyDebitor.acquire(replyBudgetId, replyId, replyFlusher);
+            }
+
+            doReplay(traceId);
+        }
+
+        private void onSignal(
+            final SignalFW signal)
+        {
+            final int signalId = signal.signalId();
+            final long traceId = signal.traceId();
+
+            switch (signalId)
+            {
+            case SIGNAL_REPLAY_DUE:
+                replayDueId = NO_CANCEL_ID;
+                doReplay(traceId);
+                break;
+            default:
+                break;
+            }
+        }
+
+        private void onReplyBudgetAvailable(
+            long traceId)
+        {
+            doReplay(traceId);
+            recycleIfClosed();
+        }
+
+        private void doReplay(
+            final long traceId)
+        {
+            boolean replaying = replyOpened(state) && !replyClosed(state);
+
+            while (replaying && replayFrame < replayFrames)
+            {
+                final long now = replayTiming ? nanoTime() : 0L;
+                final long due = replayTiming ? replayStarted + replay.offsetNanos(replayFrame) : 0L;
+
+                if (now < due)
+                {
+                    if (replayDueId == NO_CANCEL_ID)
+                    {
+                        final long dueAt = currentTimeMillis() + NANOSECONDS.toMillis(due - now) + 1L;
+                        replayDueId = signaler.signalAt(dueAt, routeId, initialId, SIGNAL_REPLAY_DUE);
+                    }
+                    replaying = false;
+                }
+                else
+                {
+                    replaying = replay.typeId(replayFrame) == DataFW.TYPE_ID
+                            ? doReplayData(traceId)
+                            : doReplayFlush(traceId);
+
+                    if (replaying)
+                    {
+                        replayFrame++;
+                    }
+                }
+            }
+
+            if (replaying && replayFrame == replayFrames)
+            {
+                state = closeReply(state);
+                doEnd(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization, EMPTY_OCTETS);
+                cleanupReply();
+            }
+        }
+
+        private boolean doReplayData(
+            final long traceId)
+        {
+            final MutableDirectBuffer buffer = replay.buffer();
+            final int index = replay.index(replayFrame);
+            final int length = replay.length(replayFrame);
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            final int payloadLength = Math.max(data.length(), 0);
+            final int reserved = payloadLength + replyPad;
+            final int replyWindow = (int) (replyAck + replyMax - replySeq);
+
+            boolean replayed = false;
+
+            if (reserved <= replyMax)
+            {
+                final boolean fits = reserved <= replyWindow;
+                final int claimed = fits ? claimReplyBudget(traceId, reserved, reserved) : 0;
+
+                if (fits && claimed == reserved)
+                {
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_ROUTE_ID, routeId);
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_STREAM_ID, replyId);
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_SEQUENCE, replySeq);
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_ACKNOWLEDGE, replyAck);
+                    buffer.putInt(index + DataFW.FIELD_OFFSET_MAXIMUM, replyMax);
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_TRACE_ID, traceId);
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_AUTHORIZATION, authorization);
+                    buffer.putLong(index + DataFW.FIELD_OFFSET_BUDGET_ID, replyBudgetId);
+                    buffer.putInt(index + DataFW.FIELD_OFFSET_RESERVED, reserved);
+
+                    receiver.accept(DataFW.TYPE_ID, buffer, index, length);
+
+                    replySeq += reserved;
+                    replayed = true;
+                }
+            }
+            else
+            {
+                replayed = doReplayFragments(traceId, data, payloadLength);
+            }
+
+            return replayed;
+        }
+
+        private boolean doReplayFragments(
+            final long traceId,
+            final DataFW data,
+            final int payloadLength)
+        {
+            final OctetsFW payload = data.payload();
+            final DirectBuffer buffer = payload.buffer();
+            final int offset = payload.offset();
+            final int flags = data.flags();
+
+            boolean fragmenting = true;
+
+            while (fragmenting && replayFragment < payloadLength)
+            {
+                final int replyWindow = (int) (replyAck + replyMax - replySeq) - replyPad;
+                final int fragmentMax = Math.min(replyWindow, payloadLength - replayFragment);
+                final int minimum = replyPad + 1;
+                final int claimed = fragmentMax > 0 ? claimReplyBudget(traceId, minimum, fragmentMax + replyPad) : 0;
+
+                fragmenting = claimed >= minimum;
+
+                if (fragmenting)
+                {
+                    final int fragment = claimed - replyPad;
+                    final int fragmentFlags =
+                            (replayFragment == 0 ? flags & FLAGS_INIT : 0) |
+                            (replayFragment + fragment == payloadLength ? flags & FLAGS_FIN : 0);
+
+                    doData(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization,
+                            fragmentFlags, replyBudgetId, claimed, buffer, offset + replayFragment, fragment);
+
+                    replySeq += claimed;
+                    replayFragment += fragment;
+                }
+            }
+
+            final boolean replayed = replayFragment == payloadLength;
+            if (replayed)
+            {
+                replayFragment = 0;
+            }
+
+            return replayed;
+        }
+
+        private boolean doReplayFlush(
+            final long traceId)
+        {
+            final MutableDirectBuffer buffer = replay.buffer();
+            final int index = replay.index(replayFrame);
+            final int length = replay.length(replayFrame);
+
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_ROUTE_ID, routeId);
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_STREAM_ID, replyId);
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_SEQUENCE, replySeq);
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_ACKNOWLEDGE, replyAck);
+            buffer.putInt(index + FlushFW.FIELD_OFFSET_MAXIMUM, replyMax);
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_TRACE_ID, traceId);
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_AUTHORIZATION, authorization);
+            buffer.putLong(index + FlushFW.FIELD_OFFSET_BUDGET_ID, replyBudgetId);
+            buffer.putInt(index + FlushFW.FIELD_OFFSET_RESERVED, 0);
+
+            receiver.accept(FlushFW.TYPE_ID, buffer, index, length);
+
+            return true;
+        }
+
+        private int claimReplyBudget(
+            final long traceId,
+            final int minimum,
+            final int maximum)
+        {
+            return replyDebitorIndex != NO_DEBITOR_INDEX
+                ? replyDebitor.claim(traceId, replyDebitorIndex, replyId, minimum, maximum, 0)
+                : maximum;
+        }
+
+        private void cleanupReply()
+        {
+            if (replayDueId != NO_CANCEL_ID)
+            {
+                signaler.cancel(replayDueId);
+                replayDueId = NO_CANCEL_ID;
+            }
+
+            if (replyDebitorIndex != NO_DEBITOR_INDEX)
+            {
+                replyDebitor.release(replyDebitorIndex, replyId);
+                replyDebitor = null;
+                replyDebitorIndex = NO_DEBITOR_INDEX;
+            }
+        }
+
+        private void doInitialWindow(
+            final long traceId)
+        {
+            final long credit = initialAck + initialWindow - initialCredited;
+            if (credit > 0L)
+            {
+                counters.windowCredit.accept(credit);
+                initialCredited += credit;
+            }
+
+            doWindow(receiver, routeId, initialId, initialSeq, initialAck, initialWindow, traceId, 0L, 0);
+        }
+    }
+
+    private void doData(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final int flags,
+        final long budgetId,
+        final int reserved,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        final DataFW data = dataRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .flags(flags)
+                .budgetId(budgetId)
+                .reserved(reserved)
+                .payload(buffer, offset, length)
+                .build();
+
+        receiver.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+    }
+
+    private void doBegin(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final long affinity,
+        final OctetsFW extension)
+    {
+        final BeginFW begin = beginRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .affinity(affinity)
+                .extension(extension)
+                .build();
+
+        receiver.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+    }
+
+    private void doEnd(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final EndFW end = endRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .extension(extension)
+                .build();
+
+        receiver.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+    }
+
+    private void doAbort(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final AbortFW abort = abortRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .extension(extension)
+                .build();
+
+        receiver.accept(abort.typeId(), abort.buffer(), abort.offset(), abort.sizeof());
+    }
+
+    private void doReset(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final ResetFW reset = resetRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+               .routeId(routeId)
+               .streamId(streamId)
+               .sequence(sequence)
+               .acknowledge(acknowledge)
+               .maximum(maximum)
+               .traceId(traceId)
+               .authorization(authorization)
+               .extension(extension)
+               .build();
+
+        sender.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+    }
+
+    private void doWindow(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long budgetId,
+        final int padding)
+    {
+        final WindowFW window = windowRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .budgetId(budgetId)
+                .padding(padding)
+                .build();
+
+        sender.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+}
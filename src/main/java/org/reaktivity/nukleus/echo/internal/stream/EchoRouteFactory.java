@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.util.Map;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.EchoRouter;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public final class EchoRouteFactory implements StreamFactory
+{
+    private static final OctetsFW EMPTY_OCTETS = new OctetsFW().wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+
+    private final BeginFW beginRO = new BeginFW();
+
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+
+    private final MutableDirectBuffer writeBuffer;
+    private final EchoRouter router;
+    private final Map<EchoMode, EchoStreamFactory> servers;
+
+    public EchoRouteFactory(
+        ElektronContext context,
+        EchoRouter router,
+        Map<EchoMode, EchoStreamFactory> servers)
+    {
+        this.writeBuffer = requireNonNull(context.writeBuffer());
+        this.router = router;
+        this.servers = servers;
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final long routeId = begin.routeId();
+        final long authorization = begin.authorization();
+
+        final EchoBinding binding = router.resolve(routeId, authorization);
+
+        MessageConsumer newStream = null;
+
+        if (binding != null && binding.kind == SERVER)
+        {
+            newStream = servers.get(binding.mode).newStream(binding, msgTypeId, buffer, index, length, sender);
+        }
+        else
+        {
+            doReset(sender, routeId, begin.streamId(), begin.sequence(), begin.acknowledge(), begin.maximum(),
+                    begin.traceId(), authorization, EMPTY_OCTETS);
+        }
+
+        return newStream;
+    }
+
+    private void doReset(
+        final MessageConsumer sender,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final OctetsFW extension)
+    {
+        final ResetFW reset = resetRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+               .routeId(routeId)
+               .streamId(streamId)
+               .sequence(sequence)
+               .acknowledge(acknowledge)
+               .maximum(maximum)
+               .traceId(traceId)
+               .authorization(authorization)
+               .extension(extension)
+               .build();
+
+        sender.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+    }
+}
@@ -15,14 +15,51 @@
  */
 package org.reaktivity.nukleus.echo.internal.stream;
 
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 import static java.util.Objects.requireNonNull;
+import static org.reaktivity.nukleus.echo.internal.EchoTrace.PHASE_RECEIVED;
+import static org.reaktivity.nukleus.echo.internal.EchoTrace.PHASE_REFLECTED;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.abort;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.aborted;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closeReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.closingReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.initialClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openInitial;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.openReply;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyClosed;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyClosing;
+import static org.reaktivity.nukleus.echo.internal.stream.EchoState.replyOpened;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+import static org.reaktivity.reaktor.nukleus.budget.BudgetCreditor.NO_CREDITOR_INDEX;
+import static org.reaktivity.reaktor.nukleus.budget.BudgetDebitor.NO_DEBITOR_INDEX;
+import static org.reaktivity.reaktor.nukleus.buffer.BufferPool.NO_SLOT;
+import static org.reaktivity.reaktor.nukleus.concurrent.Signaler.NO_CANCEL_ID;
 
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
 import java.util.function.LongUnaryOperator;
 
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.EchoCapture;
+import org.reaktivity.nukleus.echo.internal.EchoChecksum;
 import org.reaktivity.nukleus.echo.internal.EchoConfiguration;
+import org.reaktivity.nukleus.echo.internal.EchoCounters;
+import org.reaktivity.nukleus.echo.internal.EchoEndEx;
+import org.reaktivity.nukleus.echo.internal.EchoHistogram;
 import org.reaktivity.nukleus.echo.internal.EchoRouter;
+import org.reaktivity.nukleus.echo.internal.EchoTokenBucket;
+import org.reaktivity.nukleus.echo.internal.EchoTrace;
+import org.reaktivity.nukleus.echo.internal.config.EchoBinding;
 import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
 import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
 import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
@@ -31,19 +68,47 @@ import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
 import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
 import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
 import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.SignalFW;
 import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
-import org.reaktivity.reaktor.config.Binding;
 import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.budget.BudgetCreditor;
+import org.reaktivity.reaktor.nukleus.budget.BudgetDebitor;
+import org.reaktivity.reaktor.nukleus.buffer.BufferPool;
+import org.reaktivity.reaktor.nukleus.concurrent.Signaler;
 import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
 import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
 
-public final class EchoServerFactory implements StreamFactory
+public final class EchoServerFactory implements EchoStreamFactory
 {
+    private static final int FLAGS_FIN = 0x01;
+    private static final int FLAGS_INIT = 0x02;
+    private static final int FLAGS_COMPLETE = FLAGS_INIT | FLAGS_FIN;
+
+    private static final int RECORD_FLAGS_OFFSET = 0;
+    private static final int RECORD_LENGTH_OFFSET = RECORD_FLAGS_OFFSET + Integer.BYTES;
+    private static final int RECORD_RESERVED_OFFSET = RECORD_LENGTH_OFFSET + Integer.BYTES;
+    private static final int RECORD_TIMESTAMP_OFFSET = RECORD_RESERVED_OFFSET + Integer.BYTES;
+    private static final int RECORD_DEADLINE_OFFSET = RECORD_TIMESTAMP_OFFSET + Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = RECORD_DEADLINE_OFFSET + Long.BYTES;
+
+    private static final int SIGNAL_COALESCE_EXPIRED = 1;
+    private static final int SIGNAL_RATE_REFILL = 2;
+    private static final long RATE_REFILL_MILLIS = 10L;
+    private static final int SIGNAL_DELAY_TICK = 3;
+    private static final long DELAY_TICK_MILLIS = 1L;
+    private static final int DELAY_TICKS_PER_WHEEL = 1024;
+    private static final int SIGNAL_IDLE_TICK = 4;
+    private static final long IDLE_TICK_MILLIS = 1024L;
+    private static final int IDLE_TICKS_PER_WHEEL = 64;
+    private static final OctetsFW EMPTY_OCTETS = new OctetsFW().wrap(new UnsafeBuffer(new byte[0]), 0, 0);
+
     private final BeginFW beginRO = new BeginFW();
     private final DataFW dataRO = new DataFW();
+    private final DataFW mirrorDataRO = new DataFW();
     private final EndFW endRO = new EndFW();
     private final AbortFW abortRO = new AbortFW();
     private final FlushFW flushRO = new FlushFW();
+    private final SignalFW signalRO = new SignalFW();
 
     private final BeginFW.Builder beginRW = new BeginFW.Builder();
     private final DataFW.Builder dataRW = new DataFW.Builder();
@@ -59,10 +124,34 @@ public final class EchoServerFactory implements StreamFactory
     private final WindowFW.Builder windowRW = new WindowFW.Builder();
     private final ChallengeFW.Builder challengeRW = new ChallengeFW.Builder();
 
+    private final MutableDirectBuffer timestampBuffer = new UnsafeBuffer(new byte[Long.BYTES]);
+    private final OctetsFW timestampRO = new OctetsFW();
+    private final MutableDirectBuffer checksumBuffer = new UnsafeBuffer(new byte[EchoEndEx.SIZEOF]);
+    private final OctetsFW checksumRO = new OctetsFW();
+    private final EchoEndEx endExRO = new EchoEndEx();
+
     private final MutableDirectBuffer writeBuffer;
+    private final BufferPool bufferPool;
+    private final Signaler signaler;
+    private final LongUnaryOperator supplyInitialId;
     private final LongUnaryOperator supplyReplyId;
+    private final LongSupplier supplyTraceId;
+    private final LongSupplier supplyBudgetId;
+    private final BudgetCreditor creditor;
+    private final LongFunction<BudgetDebitor> supplyDebitor;
+    private final StreamFactory streamFactory;
+    private final EchoConfiguration config;
+    private final int index;
+    private final int echoTypeId;
 
     private final EchoRouter router;
+    private final Deque<EchoServer> servers;
+    private final EchoTimers<EchoServer> delayTimers;
+    private final EchoTimers<EchoServer> idleTimers;
+
+    private EchoTrace trace;
+    private int attached;
+    private int active;
 
     public EchoServerFactory(
         EchoConfiguration config,
@@ -70,12 +159,43 @@ public final class EchoServerFactory implements StreamFactory
         EchoRouter router)
     {
         this.writeBuffer = requireNonNull(context.writeBuffer());
+        this.bufferPool = context.bufferPool();
+        this.signaler = context.signaler();
+        this.supplyInitialId = context::supplyInitialId;
         this.supplyReplyId = context::supplyReplyId;
+        this.supplyTraceId = context::supplyTraceId;
+        this.supplyBudgetId = context::supplyBudgetId;
+        this.creditor = context.creditor();
+        this.supplyDebitor = context::supplyDebitor;
+        this.streamFactory = context.streamFactory();
+        this.config = config;
+        this.index = context.index();
+        this.echoTypeId = context.supplyTypeId("echo");
         this.router = router;
+        this.servers = new ArrayDeque<>();
+        this.delayTimers = new EchoTimers<>(signaler, SIGNAL_DELAY_TICK, DELAY_TICK_MILLIS, DELAY_TICKS_PER_WHEEL,
+                EchoServer::onReplyDelayExpired);
+        this.idleTimers = new EchoTimers<>(signaler, SIGNAL_IDLE_TICK, IDLE_TICK_MILLIS, IDLE_TICKS_PER_WHEEL,
+                EchoServer::onIdleExpired);
+    }
+
+    @Override
+    public MessageConsumer newStream(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length,
+        MessageConsumer sender)
+    {
+        final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+        final EchoBinding binding = router.resolve(begin.routeId(), begin.authorization());
+
+        return binding != null ? newStream(binding, msgTypeId, buffer, index, length, sender) : null;
     }
 
     @Override
     public MessageConsumer newStream(
+        EchoBinding binding,
         int msgTypeId,
         DirectBuffer buffer,
         int index,
@@ -84,41 +204,230 @@ public final class EchoServerFactory implements StreamFactory
     {
         final BeginFW begin = beginRO.wrap(buffer, index, index + length);
         final long routeId = begin.routeId();
+        final long initialId = begin.streamId();
         final long authorization = begin.authorization();
 
-        final Binding binding = router.resolve(routeId, authorization);
-
         MessageConsumer newStream = null;
 
-        if (binding != null)
+        if (binding.admitStream(authorization))
         {
-            final long initialId = begin.streamId();
+            final EchoServer server = servers.isEmpty() ? new EchoServer() : servers.pop();
+            server.init(sender, routeId, initialId, authorization, binding);
+            active++;
 
-            newStream = new EchoServer(
-                    sender,
-                    routeId,
-                    initialId)::onMessage;
+            newStream = server.handler;
+        }
+        else
+        {
+            binding.counters.streamsRejected.getAsLong();
+            doReset(sender, routeId, initialId, begin.sequence(), begin.acknowledge(), begin.maximum(),
+                    begin.traceId(), authorization, EMPTY_OCTETS);
         }
 
         return newStream;
     }
 
+    public void attach(
+        EchoBinding binding)
+    {
+        if (binding.kind == SERVER && attached++ == 0 && trace == null &&
+            (config.traceSample() > 0 || config.traceMask() != 0L))
+        {
+            trace = new EchoTrace(tracePath(config, index), config.traceCapacity(),
+                    config.traceSample(), config.traceMask());
+        }
+    }
+
+    public void detach(
+        EchoBinding binding)
+    {
+        if (binding.kind == SERVER)
+        {
+            attached--;
+            closeTraceIfUnused();
+        }
+
+        binding.detach();
+
+        if (binding.sharedCreditorIndex != NO_CREDITOR_INDEX)
+        {
+            creditor.release(binding.sharedCreditorIndex);
+            binding.sharedCreditorIndex = NO_CREDITOR_INDEX;
+        }
+
+        binding.counters.publishStats();
+    }
+
+    private void closeTraceIfUnused()
+    {
+        if (attached == 0 && active == 0 && trace != null)
+        {
+            trace.close();
+            trace = null;
+        }
+    }
+
+    private static Path tracePath(
+        EchoConfiguration config,
+        int index)
+    {
+        return config.directory().resolve("echo").resolve(String.format("trace.%d", index));
+    }
+
+    private long supplySharedBudgetId(
+        EchoBinding binding,
+        long traceId)
+    {
+        if (binding.sharedCreditorIndex == NO_CREDITOR_INDEX)
+        {
+            binding.sharedBudgetId = supplyBudgetId.getAsLong();
+            binding.sharedCreditorIndex = creditor.acquire(binding.sharedBudgetId);
+            creditor.credit(traceId, binding.sharedCreditorIndex, binding.sharedBudget);
+        }
+
+        return binding.sharedBudgetId;
+    }
+
     private final class EchoServer
     {
-        private final MessageConsumer receiver;
-        private final long routeId;
-        private final long initialId;
-        private final long replyId;
+        private final MessageConsumer handler = this::onMessage;
+        private final LongConsumer replyFlusher = this::onReplyBudgetAvailable;
+        private final EchoTokenBucket initialLimiter = new EchoTokenBucket();
+        private final MessageConsumer captureReceiver = this::onCaptureReply;
+        private final MessageConsumer teeReceiver = this::onTeeReply;
+        private final MessageConsumer traceReceiver = this::onTraceReply;
+        private final MessageConsumer mirrorHandler = this::onMirrorMessage;
+        private final MessageConsumer checksumReceiver = this::onChecksumReply;
+        private final EchoChecksum initialChecksum = new EchoChecksum();
+        private final EchoChecksum replyChecksum = new EchoChecksum();
+
+        private MessageConsumer receiver;
+        private MessageConsumer sender;
+        private MessageConsumer checksumTarget;
+        private MessageConsumer teeTarget;
+        private MessageConsumer traceTarget;
+        private MessageConsumer mirror;
+        private EchoCapture capture;
+        private EchoBinding binding;
+        private EchoCounters counters;
+        private EchoHistogram latency;
+        private boolean buffered;
+        private int coalesceLimit;
+        private long coalesceDelay;
+        private boolean latencyTimestamp;
+        private boolean checksum;
+        private boolean limited;
+        private boolean delayed;
+        private long delay;
+        private long delayJitter;
+        private long idleTimeout;
+        private long idleTimerId = NO_CANCEL_ID;
+        private long activity;
+        private long idleActivity;
+        private long routeId;
+        private long authorization;
+        private long initialId;
+        private long replyId;
+        private int state;
+
+        private long initialSeq;
+        private long initialAck;
+        private int initialMax;
+        private int initialPad;
+        private long initialBudgetId;
+        private long initialCredited;
+        private long initialRefillId = NO_CANCEL_ID;
+
+        private long replySeq;
+        private long replyAck;
+        private int replyMax;
+        private int replyPad;
+        private long replyBudgetId;
+        private BudgetDebitor replyDebitor;
+        private long replyDebitorIndex = NO_DEBITOR_INDEX;
 
-        private EchoServer(
+        private int replySlot = NO_SLOT;
+        private int replySlotOffset;
+        private int replySlotLast = -1;
+        private int replyPending;
+        private boolean replyFlushDeferred;
+        private long replyCoalesceId = NO_CANCEL_ID;
+        private long replyDeadline;
+        private long replyDelayId = NO_CANCEL_ID;
+
+        private long mirrorRouteId;
+        private long mirrorInitialId;
+        private long mirrorReplyId;
+        private int mirrorState;
+        private long mirrorSeq;
+        private long mirrorAck;
+        private int mirrorMax;
+        private int mirrorPad;
+
+        private void init(
             MessageConsumer receiver,
             long routeId,
-            long initialId)
+            long initialId,
+            long authorization,
+            EchoBinding binding)
         {
-            this.receiver = receiver;
+            this.sender = receiver;
+            this.capture = binding.capture;
+            this.traceTarget = capture != null ? captureReceiver : receiver;
+            this.teeTarget = trace != null ? traceReceiver : traceTarget;
+            this.checksumTarget = binding.mirror ? teeReceiver : teeTarget;
+            this.receiver = binding.checksum ? checksumReceiver : checksumTarget;
+            this.binding = binding;
+            this.counters = binding.counters;
+            this.latency = binding.latency;
+            this.buffered = binding.buffered;
+            this.coalesceLimit = binding.coalesceLimit;
+            this.coalesceDelay = binding.coalesceDelay;
+            this.latencyTimestamp = binding.latencyTimestamp;
+            this.checksum = binding.checksum;
+            this.limited = binding.streamRateLimit > 0L || binding.bindingRateLimit > 0L;
+            this.delay = binding.delay;
+            this.delayJitter = binding.delayJitter;
+            this.delayed = delay > 0L || delayJitter > 0L;
+            this.idleTimeout = binding.idleTimeout;
+            this.activity = 0L;
+            this.idleActivity = 0L;
             this.routeId = routeId;
+            this.authorization = authorization;
             this.initialId = initialId;
             this.replyId = supplyReplyId.applyAsLong(initialId);
+            this.state = 0;
+
+            this.initialSeq = 0L;
+            this.initialAck = 0L;
+            this.initialMax = 0;
+            this.initialPad = 0;
+            this.initialBudgetId = 0L;
+            this.initialCredited = 0L;
+            this.initialLimiter.reset(binding.streamRateLimit, limited ? nanoTime() : 0L);
+
+            this.replySeq = 0L;
+            this.replyAck = 0L;
+            this.replyMax = 0;
+            this.replyPad = 0;
+            this.replyBudgetId = 0L;
+
+            this.replyFlushDeferred = false;
+            this.replyDeadline = 0L;
+
+            this.mirrorRouteId = binding.mirror ? binding.exitId : 0L;
+            this.mirrorState = 0;
+
+            if (checksum)
+            {
+                initialChecksum.reset();
+                replyChecksum.reset();
+            }
+
+            if (idleTimeout > 0L)
+            {
+                idleTimerId = idleTimers.schedule(this, currentTimeMillis() + idleTimeout);
+            }
         }
 
         private void onMessage(
@@ -126,6 +435,295 @@ public final class EchoServerFactory implements StreamFactory
             final DirectBuffer buffer,
             final int index,
             final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (!closed(state) && (streamId == initialId || streamId == replyId))
+            {
+                counters.recordFrame(msgTypeId, buffer, index, length);
+                activity++;
+
+                if (capture != null)
+                {
+                    capture.record(msgTypeId, streamId, buffer, index, length);
+                }
+
+                if (trace != null && msgTypeId != SignalFW.TYPE_ID)
+                {
+                    traceFrame(PHASE_RECEIVED, msgTypeId, buffer, index, length);
+                }
+
+                onStreamMessage(msgTypeId, buffer, index, length);
+                recycleIfClosed();
+            }
+        }
+
+        private void recycleIfClosed()
+        {
+            if (closed(state))
+            {
+                final LongSupplier streamsClosed = aborted(state) ? counters.streamsAborted : counters.streamsClosed;
+                streamsClosed.getAsLong();
+                cancelInitialRefill();
+                cancelIdle();
+                binding.releaseStream(authorization);
+                cleanupMirror();
+                binding = null;
+                capture = null;
+                counters = null;
+                latency = null;
+                servers.push(this);
+                active--;
+                closeTraceIfUnused();
+            }
+        }
+
+        private void onCaptureReply(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            capture.record(msgTypeId, streamId, buffer, index, length);
+            sender.accept(msgTypeId, buffer, index, length);
+        }
+
+        private void onChecksumReply(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            if (msgTypeId == DataFW.TYPE_ID && buffer.getLong(index + DataFW.FIELD_OFFSET_STREAM_ID) == replyId)
+            {
+                final int payloadLength = buffer.getInt(index + DataFW.FIELD_OFFSET_LENGTH);
+
+                if (payloadLength > 0)
+                {
+                    replyChecksum.update(buffer, index + DataFW.FIELD_OFFSET_PAYLOAD, payloadLength);
+                }
+            }
+
+            checksumTarget.accept(msgTypeId, buffer, index, length);
+        }
+
+        private void onTraceReply(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            traceFrame(PHASE_REFLECTED, msgTypeId, buffer, index, length);
+            traceTarget.accept(msgTypeId, buffer, index, length);
+        }
+
+        private void traceFrame(
+            final int phase,
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long traceId = buffer.getLong(index + BeginFW.FIELD_OFFSET_TRACE_ID);
+
+            if (trace.sampled(traceId) && !trace.record(phase, msgTypeId, buffer, index, length))
+            {
+                counters.traceDrops.getAsLong();
+            }
+        }
+
+        private void onTeeReply(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            teeTarget.accept(msgTypeId, buffer, index, length);
+
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (streamId == replyId && mirror != null && !initialClosed(mirrorState))
+            {
+                switch (msgTypeId)
+                {
+                case DataFW.TYPE_ID:
+                    final DataFW data = mirrorDataRO.wrap(buffer, index, index + length);
+                    doMirrorData(data);
+                    break;
+                case FlushFW.TYPE_ID:
+                    doMirrorFrame(msgTypeId, buffer, index, length, FlushFW.FIELD_OFFSET_BUDGET_ID,
+                            FlushFW.FIELD_OFFSET_RESERVED, 0);
+                    break;
+                case EndFW.TYPE_ID:
+                    mirrorState = closeInitial(mirrorState);
+                    doEnd(mirror, mirrorRouteId, mirrorInitialId, mirrorSeq, mirrorAck, mirrorMax,
+                            buffer.getLong(index + EndFW.FIELD_OFFSET_TRACE_ID), authorization, EMPTY_OCTETS);
+                    break;
+                case AbortFW.TYPE_ID:
+                    mirrorState = closeInitial(mirrorState);
+                    doAbort(mirror, mirrorRouteId, mirrorInitialId, mirrorSeq, mirrorAck, mirrorMax,
+                            buffer.getLong(index + AbortFW.FIELD_OFFSET_TRACE_ID), authorization, EMPTY_OCTETS);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        private void doMirrorData(
+            final DataFW data)
+        {
+            final OctetsFW payload = data.payload();
+            final int reserved = (payload != null ? payload.sizeof() : 0) + mirrorPad;
+
+            if (reserved <= mirrorAck + mirrorMax - mirrorSeq)
+            {
+                doMirrorFrame(DataFW.TYPE_ID, data.buffer(), data.offset(), data.sizeof(), DataFW.FIELD_OFFSET_BUDGET_ID,
+                        DataFW.FIELD_OFFSET_RESERVED, reserved);
+                mirrorSeq += reserved;
+            }
+            else
+            {
+                counters.mirrorDrops.getAsLong();
+            }
+        }
+
+        private void doMirrorFrame(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length,
+            final int budgetIdOffset,
+            final int reservedOffset,
+            final int reserved)
+        {
+            final int offset = writeOffset(buffer, index, length);
+
+            writeBuffer.putBytes(offset, buffer, index, length);
+            writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_ROUTE_ID, mirrorRouteId);
+            writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_STREAM_ID, mirrorInitialId);
+            writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_SEQUENCE, mirrorSeq);
+            writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_ACKNOWLEDGE, mirrorAck);
+            writeBuffer.putInt(offset + DataFW.FIELD_OFFSET_MAXIMUM, mirrorMax);
+            writeBuffer.putLong(offset + budgetIdOffset, 0L);
+            writeBuffer.putInt(offset + reservedOffset, reserved);
+
+            mirror.accept(msgTypeId, writeBuffer, offset, length);
+            counters.mirrorFrames.getAsLong();
+        }
+
+        private void doMirrorBegin(
+            final long traceId,
+            final long affinity)
+        {
+            mirrorInitialId = supplyInitialId.applyAsLong(mirrorRouteId);
+            mirrorReplyId = supplyReplyId.applyAsLong(mirrorInitialId);
+            mirrorSeq = 0L;
+            mirrorAck = 0L;
+            mirrorMax = 0;
+            mirrorPad = 0;
+
+            final BeginFW begin = beginRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                    .routeId(mirrorRouteId)
+                    .streamId(mirrorInitialId)
+                    .sequence(mirrorSeq)
+                    .acknowledge(mirrorAck)
+                    .maximum(mirrorMax)
+                    .traceId(traceId)
+                    .authorization(authorization)
+                    .affinity(affinity)
+                    .build();
+
+            mirror = streamFactory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), mirrorHandler);
+
+            if (mirror != null)
+            {
+                mirrorState = openInitial(mirrorState);
+                mirror.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+            }
+        }
+
+        private void onMirrorMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
+        {
+            final long streamId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+
+            if (mirror != null && streamId == mirrorInitialId)
+            {
+                switch (msgTypeId)
+                {
+                case WindowFW.TYPE_ID:
+                    final WindowFW window = windowRO.wrap(buffer, index, index + length);
+                    mirrorAck = window.acknowledge();
+                    mirrorMax = window.maximum();
+                    mirrorPad = window.padding();
+                    break;
+                case ResetFW.TYPE_ID:
+                    mirrorState = closeInitial(mirrorState);
+                    break;
+                default:
+                    break;
+                }
+            }
+            else if (mirror != null && streamId == mirrorReplyId)
+            {
+                switch (msgTypeId)
+                {
+                case BeginFW.TYPE_ID:
+                    final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+                    mirrorState = openReply(mirrorState);
+                    doWindow(mirror, mirrorRouteId, mirrorReplyId, begin.sequence(), begin.acknowledge(),
+                            bufferPool.slotCapacity(), begin.traceId(), 0L, 0);
+                    break;
+                case DataFW.TYPE_ID:
+                    final DataFW data = dataRO.wrap(buffer, index, index + length);
+                    final long replied = data.sequence() + data.reserved();
+                    doWindow(mirror, mirrorRouteId, mirrorReplyId, replied, replied,
+                            bufferPool.slotCapacity(), data.traceId(), 0L, 0);
+                    break;
+                case EndFW.TYPE_ID:
+                case AbortFW.TYPE_ID:
+                    mirrorState = closeReply(mirrorState);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+
+        private void cleanupMirror()
+        {
+            if (mirror != null)
+            {
+                final long traceId = supplyTraceId.getAsLong();
+
+                if (!initialClosed(mirrorState))
+                {
+                    doAbort(mirror, mirrorRouteId, mirrorInitialId, mirrorSeq, mirrorAck, mirrorMax, traceId,
+                            authorization, EMPTY_OCTETS);
+                }
+
+                if (replyOpened(mirrorState) && !replyClosed(mirrorState))
+                {
+                    doReset(mirror, mirrorRouteId, mirrorReplyId, 0L, 0L, 0, traceId, authorization, EMPTY_OCTETS);
+                }
+
+                mirror = null;
+                mirrorInitialId = 0L;
+                mirrorReplyId = 0L;
+            }
+        }
+
+        private void onStreamMessage(
+            final int msgTypeId,
+            final DirectBuffer buffer,
+            final int index,
+            final int length)
         {
             switch (msgTypeId)
             {
@@ -161,6 +759,10 @@ public final class EchoServerFactory implements StreamFactory
                 final ChallengeFW challenge = challengeRO.wrap(buffer, index, index + length);
                 onChallenge(challenge);
                 break;
+            case SignalFW.TYPE_ID:
+                final SignalFW signal = signalRO.wrap(buffer, index, index + length);
+                onSignal(signal);
+                break;
             default:
                 // ignore
                 break;
@@ -178,8 +780,36 @@ public final class EchoServerFactory implements StreamFactory
             final long affinity = begin.affinity();
             final OctetsFW extension = begin.extension();
 
-            doBegin(receiver, routeId, replyId, sequence, acknowledge, maximum, traceId,
+            initialSeq = sequence;
+            initialAck = acknowledge;
+            initialMax = maximum;
+            initialCredited = acknowledge + maximum;
+
+            replySeq = sequence;
+            replyAck = acknowledge;
+            replyMax = maximum;
+
+            state = openInitial(state);
+            counters.streamsOpened.getAsLong();
+
+            doBegin(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId,
                     authorization, affinity, extension);
+            state = openReply(state);
+
+            if (mirrorRouteId != 0L)
+            {
+                doMirrorBegin(traceId, affinity);
+            }
+
+            if (buffered)
+            {
+                initialAck = initialSeq;
+                initialMax = bufferPool.slotCapacity();
+                initialPad = RECORD_HEADER_SIZE;
+                initialBudgetId = binding.sharedBudget > 0 ? supplySharedBudgetId(binding, traceId) : 0L;
+
+                doInitialWindow(traceId);
+            }
         }
 
         private void onData(
@@ -187,17 +817,69 @@ public final class EchoServerFactory implements StreamFactory
         {
             final long sequence = data.sequence();
             final long acknowledge = data.acknowledge();
-            final int maximum = data.maximum();
+            final long traceId = data.traceId();
+            final long authorization = data.authorization();
+            final int reserved = data.reserved();
+            final long receivedAt = latency != null ? nanoTime() : 0L;
+            final boolean valid = validInitial(sequence, acknowledge, reserved) && data.length() <= reserved;
+            final OctetsFW payload = checksum && valid ? data.payload() : null;
+
+            if (valid)
+            {
+                initialSeq = sequence + reserved;
+            }
+
+            if (payload != null)
+            {
+                initialChecksum.update(payload.buffer(), payload.offset(), payload.sizeof());
+            }
+
+            if (!valid)
+            {
+                doProtocolViolation(traceId, authorization);
+            }
+            else if (replySlot == NO_SLOT && !buffered && reserved <= replyAck + replyMax - replySeq &&
+                claimReplyBudget(traceId, reserved, reserved) == reserved)
+            {
+                if (!latencyTimestamp)
+                {
+                    doReflectData(receiver, data.buffer(), data.offset(), data.sizeof(),
+                            replyId, replySeq, replyAck, replyMax, replyBudgetId);
+                }
+                else
+                {
+                    onDataCopy(data);
+                }
+
+                replySeq += reserved;
+
+                if (latency != null)
+                {
+                    latency.record(nanoTime() - receivedAt);
+                }
+            }
+            else if (!bufferReplyData(data, receivedAt))
+            {
+                cleanup(traceId, authorization);
+            }
+            else if (flushReplyData(traceId, authorization, false))
+            {
+                doInitialWindow(traceId);
+            }
+        }
+
+        private void onDataCopy(
+            final DataFW data)
+        {
             final long traceId = data.traceId();
             final long authorization = data.authorization();
             final int flags = data.flags();
-            final long budgetId = data.budgetId();
             final int reserved = data.reserved();
             final OctetsFW payload = data.payload();
-            final OctetsFW extension = data.extension();
+            final OctetsFW extension = latencyTimestamp ? supplyTimestamp() : data.extension();
 
-            doData(receiver, routeId, replyId, sequence, acknowledge, maximum, traceId,
-                    authorization, flags, budgetId, reserved, payload, extension);
+            doData(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId,
+                    authorization, flags, replyBudgetId, reserved, payload, extension);
         }
 
         private void onFlush(
@@ -205,15 +887,44 @@ public final class EchoServerFactory implements StreamFactory
         {
             final long sequence = flush.sequence();
             final long acknowledge = flush.acknowledge();
-            final int maximum = flush.maximum();
             final long traceId = flush.traceId();
             final long authorization = flush.authorization();
-            final long budgetId = flush.budgetId();
             final int reserved = flush.reserved();
             final OctetsFW extension = flush.extension();
 
-            doFlush(receiver, routeId, replyId, sequence, acknowledge, maximum, traceId,
-                    authorization, budgetId, reserved, extension);
+            if (!validInitial(sequence, acknowledge, reserved))
+            {
+                doProtocolViolation(traceId, authorization);
+            }
+            else
+            {
+                onFlushInWindow(sequence, reserved, traceId, authorization, extension);
+            }
+        }
+
+        private void onFlushInWindow(
+            final long sequence,
+            final int reserved,
+            final long traceId,
+            final long authorization,
+            final OctetsFW extension)
+        {
+            initialSeq = sequence + reserved;
+
+            if (flushReplyData(traceId, authorization, true))
+            {
+                doInitialWindow(traceId);
+            }
+
+            if (replySlot == NO_SLOT)
+            {
+                doFlush(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId,
+                        authorization, replyBudgetId, 0, extension);
+            }
+            else
+            {
+                replyFlushDeferred = true;
+            }
         }
 
         private void onEnd(
@@ -221,41 +932,83 @@ public final class EchoServerFactory implements StreamFactory
         {
             final long sequence = end.sequence();
             final long acknowledge = end.acknowledge();
-            final int maximum = end.maximum();
             final long traceId = end.traceId();
             final long authorization = end.authorization();
             final OctetsFW extension = end.extension();
 
-            doEnd(receiver, routeId, replyId, sequence, acknowledge, maximum, traceId,
-                    authorization, extension);
+            if (!validInitial(sequence, acknowledge, 0))
+            {
+                doProtocolViolation(traceId, authorization);
+            }
+            else
+            {
+                onEndInWindow(sequence, traceId, authorization, extension);
+            }
+        }
+
+        private void onEndInWindow(
+            final long sequence,
+            final long traceId,
+            final long authorization,
+            final OctetsFW extension)
+        {
+            initialSeq = sequence;
+            state = closeInitial(state);
+
+            final EchoEndEx endEx = checksum
+                    ? endExRO.tryWrap(extension.buffer(), extension.offset(), extension.limit())
+                    : null;
+
+            if (endEx != null && endEx.typeId() == echoTypeId && endEx.checksum() != initialChecksum.value())
+            {
+                counters.checksumMismatches.getAsLong();
+            }
+
+            if (flushReplyData(traceId, authorization, true))
+            {
+                doInitialWindow(traceId);
+            }
+
+            if (replySlot == NO_SLOT)
+            {
+                doReplyEnd(traceId, authorization, extension);
+            }
+            else
+            {
+                state = closingReply(state);
+            }
         }
 
         private void onAbort(
             final AbortFW abort)
         {
             final long sequence = abort.sequence();
-            final long acknowledge = abort.acknowledge();
-            final int maximum = abort.maximum();
             final long traceId = abort.traceId();
             final long authorization = abort.authorization();
             final OctetsFW extension = abort.extension();
 
-            doAbort(receiver, routeId, replyId, sequence, acknowledge, maximum, traceId,
-                    authorization, extension);
+            initialSeq = sequence;
+            state = closeInitial(state);
+
+            releaseInitialBudget(traceId);
+            doReplyAbort(traceId, authorization, extension);
         }
 
         private void onReset(
             final ResetFW reset)
         {
-            final long sequence = reset.sequence();
             final long acknowledge = reset.acknowledge();
-            final int maximum = reset.maximum();
             final long traceId = reset.traceId();
             final long authorization = reset.authorization();
             final OctetsFW extension = reset.extension();
 
-            doReset(receiver, routeId, initialId, sequence, acknowledge, maximum, traceId,
-                    authorization, extension);
+            replyAck = acknowledge;
+            state = closeReply(state);
+            state = abort(state);
+
+            releaseReplySlot();
+            releaseReplyDebitor();
+            doInitialReset(traceId, authorization, extension);
         }
 
         private void onWindow(
@@ -265,11 +1018,43 @@ public final class EchoServerFactory implements StreamFactory
             final long acknowledge = window.acknowledge();
             final int maximum = window.maximum();
             final long traceId = window.traceId();
+
+            if (sequence > replySeq || acknowledge > sequence || acknowledge < replyAck || maximum < 0)
+            {
+                doProtocolViolation(traceId, 0L);
+            }
+            else
+            {
+                onWindowInRange(window);
+            }
+        }
+
+        private void onWindowInRange(
+            final WindowFW window)
+        {
+            final long acknowledge = window.acknowledge();
+            final int maximum = window.maximum();
+            final long traceId = window.traceId();
             final long budgetId = window.budgetId();
             final int padding = window.padding();
 
-            doWindow(receiver, routeId, initialId, sequence, acknowledge, maximum, traceId,
-                    budgetId, padding);
+            replyAck = acknowledge;
+            replyMax = maximum;
+            replyPad = padding;
+            replyBudgetId = budgetId;
+
+            if (replyBudgetId != 0L && replyDebitorIndex == NO_DEBITOR_INDEX)
+            {
+                replyDebitor = supplyDebitor.apply(replyBudgetId);
+                replyDebitorIndex = replyDebitor.acquire(replyBudgetId, replyId, replyFlusher);
+            }
+
+            final boolean flushed = flushReplyData(traceId, 0L, false);
+
+            if (flushed || !buffered)
+            {
+                doInitialWindow(traceId);
+            }
         }
 
         private void onChallenge(
@@ -285,6 +1070,518 @@ public final class EchoServerFactory implements StreamFactory
             doChallenge(receiver, routeId, initialId, sequence, acknowledge, maximum, traceId,
                     authorization, extension);
         }
+
+        private void onSignal(
+            SignalFW signal)
+        {
+            final int signalId = signal.signalId();
+
+            switch (signalId)
+            {
+            case SIGNAL_COALESCE_EXPIRED:
+                replyCoalesceId = NO_CANCEL_ID;
+                final long traceId = supplyTraceId.getAsLong();
+                if (flushReplyData(traceId, 0L, true))
+                {
+                    doInitialWindow(traceId);
+                }
+                break;
+            case SIGNAL_RATE_REFILL:
+                initialRefillId = NO_CANCEL_ID;
+                doInitialWindow(supplyTraceId.getAsLong());
+                break;
+            default:
+                break;
+            }
+        }
+
+        private void onReplyBudgetAvailable(
+            long traceId)
+        {
+            if (flushReplyData(traceId, 0L, false))
+            {
+                doInitialWindow(traceId);
+            }
+
+            recycleIfClosed();
+        }
+
+        private void onIdleExpired(
+            long timerId)
+        {
+            if (timerId == idleTimerId)
+            {
+                idleTimerId = NO_CANCEL_ID;
+
+                if (activity != idleActivity)
+                {
+                    idleActivity = activity;
+                    idleTimerId = idleTimers.schedule(this, currentTimeMillis() + idleTimeout);
+                }
+                else
+                {
+                    counters.streamsReaped.getAsLong();
+                    cleanup(supplyTraceId.getAsLong(), 0L);
+                    recycleIfClosed();
+                }
+            }
+        }
+
+        private void onReplyDelayExpired(
+            long timerId)
+        {
+            if (timerId == replyDelayId)
+            {
+                final long traceId = supplyTraceId.getAsLong();
+
+                replyDelayId = NO_CANCEL_ID;
+
+                if (flushReplyData(traceId, 0L, false))
+                {
+                    doInitialWindow(traceId);
+                }
+
+                recycleIfClosed();
+            }
+        }
+
+        private void doInitialWindow(
+            final long traceId)
+        {
+            if (!buffered)
+            {
+                final long replyAckAsInitial = replyAck - (replySeq - initialSeq) - replyPending;
+
+                initialAck = Math.max(initialAck, replyAckAsInitial);
+                initialMax = replyMax;
+                initialPad = replyPad;
+                initialBudgetId = replyBudgetId;
+            }
+
+            if (!initialClosed(state))
+            {
+                final long credit = claimInitialCredit(initialAck + initialMax - initialCredited);
+                if (credit > 0L)
+                {
+                    counters.windowCredit.accept(credit);
+                    initialCredited += credit;
+                }
+
+                final int maximum = (int) Math.min(initialMax, initialCredited - initialAck);
+
+                doWindow(receiver, routeId, initialId, initialSeq, initialAck, maximum, traceId,
+                        initialBudgetId, initialPad);
+            }
+        }
+
+        private long claimInitialCredit(
+            final long credit)
+        {
+            long claimed = credit;
+
+            if (limited && credit > 0L)
+            {
+                final EchoTokenBucket bindingLimiter = binding.limiter;
+                final long now = nanoTime();
+                final long available = Math.min(initialLimiter.available(now), bindingLimiter.available(now));
+
+                claimed = Math.max(Math.min(credit, available), 0L);
+                initialLimiter.consume(claimed);
+                bindingLimiter.consume(claimed);
+
+                if (claimed < credit && initialRefillId == NO_CANCEL_ID)
+                {
+                    counters.windowThrottled.getAsLong();
+                    initialRefillId = signaler.signalAt(currentTimeMillis() + RATE_REFILL_MILLIS, routeId, initialId,
+                            SIGNAL_RATE_REFILL);
+                }
+            }
+
+            return claimed;
+        }
+
+        private boolean bufferReplyData(
+            final DataFW data,
+            final long receivedAt)
+        {
+            final int flags = data.flags();
+            final int reserved = data.reserved();
+            final OctetsFW payload = data.payload();
+            final int length = payload != null ? payload.sizeof() : 0;
+            final long deadline = delayed ? supplyReplyDeadline() : 0L;
+
+            if (replySlot == NO_SLOT)
+            {
+                replySlot = bufferPool.acquire(initialId);
+            }
+
+            boolean accepted = false;
+
+            if (replySlot != NO_SLOT)
+            {
+                final MutableDirectBuffer slot = bufferPool.buffer(replySlot);
+                final int slotCapacity = bufferPool.slotCapacity();
+
+                if (coalesceLimit > 0 && replySlotLast != -1 && flags == FLAGS_COMPLETE &&
+                    slot.getInt(replySlotLast + RECORD_FLAGS_OFFSET) == FLAGS_COMPLETE &&
+                    slot.getInt(replySlotLast + RECORD_LENGTH_OFFSET) + length <= coalesceLimit &&
+                    replySlotOffset + length <= slotCapacity)
+                {
+                    final int lastLength = slot.getInt(replySlotLast + RECORD_LENGTH_OFFSET);
+                    final int lastReserved = slot.getInt(replySlotLast + RECORD_RESERVED_OFFSET);
+
+                    slot.putInt(replySlotLast + RECORD_LENGTH_OFFSET, lastLength + length);
+                    slot.putInt(replySlotLast + RECORD_RESERVED_OFFSET, lastReserved + reserved);
+                    slot.putLong(replySlotLast + RECORD_DEADLINE_OFFSET, deadline);
+                    if (length > 0)
+                    {
+                        slot.putBytes(replySlotOffset, payload.buffer(), payload.offset(), length);
+                    }
+                    replySlotOffset += length;
+                    replyPending += reserved;
+                    accepted = true;
+                }
+                else if (replySlotOffset + RECORD_HEADER_SIZE + length <= slotCapacity)
+                {
+                    slot.putInt(replySlotOffset + RECORD_FLAGS_OFFSET, flags);
+                    slot.putInt(replySlotOffset + RECORD_LENGTH_OFFSET, length);
+                    slot.putInt(replySlotOffset + RECORD_RESERVED_OFFSET, reserved);
+                    slot.putLong(replySlotOffset + RECORD_TIMESTAMP_OFFSET, receivedAt);
+                    slot.putLong(replySlotOffset + RECORD_DEADLINE_OFFSET, deadline);
+                    if (length > 0)
+                    {
+                        slot.putBytes(replySlotOffset + RECORD_HEADER_SIZE, payload.buffer(), payload.offset(), length);
+                    }
+                    replySlotLast = replySlotOffset;
+                    replySlotOffset += RECORD_HEADER_SIZE + length;
+                    replyPending += reserved;
+                    accepted = true;
+                }
+            }
+
+            return accepted;
+        }
+
+        private boolean flushReplyData(
+            final long traceId,
+            final long authorization,
+            final boolean forced)
+        {
+            boolean flushed = false;
+
+            if (replySlot != NO_SLOT)
+            {
+                final boolean coalesced = coalesceLimit > 0 && !forced && !replyClosing(state) && !replyFlushDeferred;
+                final MutableDirectBuffer slot = bufferPool.buffer(replySlot);
+                final long now = delayed ? currentTimeMillis() : 0L;
+
+                int recordOffset = 0;
+                int acknowledged = 0;
+
+                while (recordOffset < replySlotOffset)
+                {
+                    final int flags = slot.getInt(recordOffset + RECORD_FLAGS_OFFSET);
+                    final int length = slot.getInt(recordOffset + RECORD_LENGTH_OFFSET);
+                    final int reserved = slot.getInt(recordOffset + RECORD_RESERVED_OFFSET);
+                    final long receivedAt = slot.getLong(recordOffset + RECORD_TIMESTAMP_OFFSET);
+                    final long deadline = slot.getLong(recordOffset + RECORD_DEADLINE_OFFSET);
+                    final int replyWindow = (int) (replyAck + replyMax - replySeq) - replyPad;
+                    final int fragmentMax = Math.min(length, replyWindow);
+
+                    if (replyWindow < 0 ||
+                        deadline > now ||
+                        fragmentMax <= 0 && length > 0 ||
+                        coalesced && recordOffset == replySlotLast && fragmentMax == length &&
+                        flags == FLAGS_COMPLETE && length < coalesceLimit && length < replyWindow)
+                    {
+                        break;
+                    }
+
+                    final int minimum = Math.min(fragmentMax, 1) + replyPad;
+                    final int claimed = claimReplyBudget(traceId, minimum, fragmentMax + replyPad);
+
+                    if (claimed < minimum)
+                    {
+                        break;
+                    }
+
+                    final int fragment = claimed - replyPad;
+
+                    final int fragmentFlags = fragment == length ? flags : flags & ~FLAGS_FIN;
+                    final int fragmentReserved = fragment + replyPad;
+
+                    doData(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId, authorization,
+                            fragmentFlags, replyBudgetId, fragmentReserved,
+                            slot, recordOffset + RECORD_HEADER_SIZE, fragment,
+                            latencyTimestamp ? supplyTimestamp() : EMPTY_OCTETS);
+
+                    replySeq += fragmentReserved;
+
+                    if (fragment == length)
+                    {
+                        recordOffset += RECORD_HEADER_SIZE + length;
+                        replyPending -= reserved;
+                        acknowledged += reserved;
+
+                        if (latency != null)
+                        {
+                            latency.record(nanoTime() - receivedAt);
+                        }
+                    }
+                    else
+                    {
+                        final int remainingOffset = recordOffset + fragment;
+                        slot.putInt(remainingOffset + RECORD_FLAGS_OFFSET, flags & ~FLAGS_INIT);
+                        slot.putInt(remainingOffset + RECORD_LENGTH_OFFSET, length - fragment);
+                        slot.putInt(remainingOffset + RECORD_RESERVED_OFFSET, reserved - fragment);
+                        slot.putLong(remainingOffset + RECORD_TIMESTAMP_OFFSET, receivedAt);
+                        slot.putLong(remainingOffset + RECORD_DEADLINE_OFFSET, deadline);
+                        if (recordOffset == replySlotLast)
+                        {
+                            replySlotLast = remainingOffset;
+                        }
+                        recordOffset = remainingOffset;
+                        replyPending -= fragment;
+                        acknowledged += fragment;
+                    }
+                }
+
+                if (recordOffset > 0)
+                {
+                    replySlotOffset -= recordOffset;
+                    replySlotLast = replySlotLast >= recordOffset ? replySlotLast - recordOffset : -1;
+
+                    if (replySlotOffset > 0)
+                    {
+                        slot.putBytes(0, slot, recordOffset, replySlotOffset);
+                    }
+                }
+
+                if (replySlotOffset != 0 && delayed && replyDelayId == NO_CANCEL_ID)
+                {
+                    final long deadline = slot.getLong(RECORD_DEADLINE_OFFSET);
+                    if (deadline > now)
+                    {
+                        replyDelayId = delayTimers.schedule(this, deadline);
+                    }
+                }
+
+                if (replySlotOffset != 0 && coalesceLimit > 0 && replyCoalesceId == NO_CANCEL_ID)
+                {
+                    replyCoalesceId = signaler.signalAt(currentTimeMillis() + coalesceDelay, routeId, initialId,
+                            SIGNAL_COALESCE_EXPIRED);
+                }
+
+                if (replySlotOffset == 0)
+                {
+                    releaseReplySlot();
+
+                    if (replyFlushDeferred)
+                    {
+                        replyFlushDeferred = false;
+                        doFlush(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId,
+                                authorization, replyBudgetId, 0, EMPTY_OCTETS);
+                    }
+
+                    if (replyClosing(state))
+                    {
+                        doReplyEnd(traceId, authorization, EMPTY_OCTETS);
+                    }
+                }
+
+                if (buffered)
+                {
+                    initialAck += acknowledged;
+                    flushed = acknowledged > 0;
+
+                    if (flushed && initialBudgetId != 0L)
+                    {
+                        creditor.credit(traceId, binding.sharedCreditorIndex, acknowledged);
+                    }
+                }
+                else
+                {
+                    flushed = recordOffset > 0;
+                }
+            }
+
+            return flushed;
+        }
+
+        private int claimReplyBudget(
+            final long traceId,
+            final int minimum,
+            final int maximum)
+        {
+            return replyDebitorIndex != NO_DEBITOR_INDEX
+                ? replyDebitor.claim(traceId, replyDebitorIndex, replyId, minimum, maximum, 0)
+                : maximum;
+        }
+
+        private boolean validInitial(
+            final long sequence,
+            final long acknowledge,
+            final int reserved)
+        {
+            return sequence >= initialSeq && acknowledge <= initialAck && sequence + reserved <= initialCredited;
+        }
+
+        private void doProtocolViolation(
+            final long traceId,
+            final long authorization)
+        {
+            counters.protocolViolations.getAsLong();
+            cleanup(traceId, authorization);
+        }
+
+        private void cleanup(
+            final long traceId,
+            final long authorization)
+        {
+            doInitialReset(traceId, authorization, EMPTY_OCTETS);
+            doReplyAbort(traceId, authorization, EMPTY_OCTETS);
+        }
+
+        private void doInitialReset(
+            final long traceId,
+            final long authorization,
+            final OctetsFW extension)
+        {
+            if (!initialClosed(state))
+            {
+                state = closeInitial(state);
+                state = abort(state);
+                doReset(receiver, routeId, initialId, initialSeq, initialAck, initialMax, traceId,
+                        authorization, extension);
+            }
+
+            releaseInitialBudget(traceId);
+        }
+
+        private void doReplyEnd(
+            final long traceId,
+            final long authorization,
+            final OctetsFW extension)
+        {
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+
+                if (checksum && replyChecksum.value() != initialChecksum.value())
+                {
+                    counters.checksumMismatches.getAsLong();
+                }
+
+                doEnd(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId,
+                        authorization, checksum ? supplyChecksum(replyChecksum.value()) : extension);
+            }
+
+            releaseReplySlot();
+            releaseReplyDebitor();
+        }
+
+        private void doReplyAbort(
+            final long traceId,
+            final long authorization,
+            final OctetsFW extension)
+        {
+            if (!replyClosed(state))
+            {
+                state = closeReply(state);
+                state = abort(state);
+                doAbort(receiver, routeId, replyId, replySeq, replyAck, replyMax, traceId,
+                        authorization, extension);
+            }
+
+            releaseReplySlot();
+            releaseReplyDebitor();
+        }
+
+        private void releaseReplyDebitor()
+        {
+            if (replyDebitorIndex != NO_DEBITOR_INDEX)
+            {
+                replyDebitor.release(replyDebitorIndex, replyId);
+                replyDebitor = null;
+                replyDebitorIndex = NO_DEBITOR_INDEX;
+            }
+        }
+
+        private void releaseInitialBudget(
+            final long traceId)
+        {
+            if (initialBudgetId != 0L)
+            {
+                final long unacknowledged = initialSeq - initialAck;
+                if (unacknowledged > 0L)
+                {
+                    creditor.credit(traceId, binding.sharedCreditorIndex, unacknowledged);
+                }
+                initialBudgetId = 0L;
+            }
+        }
+
+        private void cancelInitialRefill()
+        {
+            if (initialRefillId != NO_CANCEL_ID)
+            {
+                signaler.cancel(initialRefillId);
+                initialRefillId = NO_CANCEL_ID;
+            }
+        }
+
+        private long supplyReplyDeadline()
+        {
+            final long jitter = delayJitter > 0L ? ThreadLocalRandom.current().nextLong(delayJitter + 1L) : 0L;
+            replyDeadline = Math.max(replyDeadline, currentTimeMillis() + delay + jitter);
+            return replyDeadline;
+        }
+
+        private void cancelIdle()
+        {
+            if (idleTimerId != NO_CANCEL_ID)
+            {
+                idleTimers.cancel(idleTimerId);
+                idleTimerId = NO_CANCEL_ID;
+            }
+        }
+
+        private void releaseReplySlot()
+        {
+            if (replyCoalesceId != NO_CANCEL_ID)
+            {
+                signaler.cancel(replyCoalesceId);
+                replyCoalesceId = NO_CANCEL_ID;
+            }
+
+            if (replyDelayId != NO_CANCEL_ID)
+            {
+                delayTimers.cancel(replyDelayId);
+                replyDelayId = NO_CANCEL_ID;
+            }
+
+            if (replySlot != NO_SLOT)
+            {
+                bufferPool.release(replySlot);
+                replySlot = NO_SLOT;
+                replySlotOffset = 0;
+                replySlotLast = -1;
+                replyPending = 0;
+            }
+        }
+    }
+
+    private OctetsFW supplyTimestamp()
+    {
+        timestampBuffer.putLong(0, nanoTime());
+        return timestampRO.wrap(timestampBuffer, 0, Long.BYTES);
+    }
+
+    private OctetsFW supplyChecksum(
+        int checksum)
+    {
+        final int length = EchoEndEx.encode(checksumBuffer, 0, echoTypeId, checksum);
+        return checksumRO.wrap(checksumBuffer, 0, length);
     }
 
     private void doBegin(
@@ -347,6 +1644,72 @@ public final class EchoServerFactory implements StreamFactory
         receiver.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
     }
 
+    private void doData(
+        final MessageConsumer receiver,
+        final long routeId,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long traceId,
+        final long authorization,
+        final int flags,
+        final long budgetId,
+        final int reserved,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final OctetsFW extension)
+    {
+        final DataFW data = dataRW.wrap(writeBuffer, 0, writeBuffer.capacity())
+                .routeId(routeId)
+                .streamId(streamId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(traceId)
+                .authorization(authorization)
+                .flags(flags)
+                .budgetId(budgetId)
+                .reserved(reserved)
+                .payload(buffer, offset, length)
+                .extension(extension)
+                .build();
+
+        receiver.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+    }
+
+    private void doReflectData(
+        final MessageConsumer receiver,
+        final DirectBuffer buffer,
+        final int index,
+        final int length,
+        final long streamId,
+        final long sequence,
+        final long acknowledge,
+        final int maximum,
+        final long budgetId)
+    {
+        final int offset = writeOffset(buffer, index, length);
+
+        writeBuffer.putBytes(offset, buffer, index, length);
+        writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_STREAM_ID, streamId);
+        writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_SEQUENCE, sequence);
+        writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_ACKNOWLEDGE, acknowledge);
+        writeBuffer.putInt(offset + DataFW.FIELD_OFFSET_MAXIMUM, maximum);
+        writeBuffer.putLong(offset + DataFW.FIELD_OFFSET_BUDGET_ID, budgetId);
+
+        receiver.accept(DataFW.TYPE_ID, writeBuffer, offset, length);
+    }
+
+    private int writeOffset(
+        final DirectBuffer buffer,
+        final int index,
+        final int length)
+    {
+        return buffer == writeBuffer ? index + length : 0;
+    }
+
     private void doFlush(
         final MessageConsumer receiver,
         final long routeId,
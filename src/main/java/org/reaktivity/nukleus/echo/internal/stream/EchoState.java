@@ -0,0 +1,109 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+final class EchoState
+{
+    private static final int INITIAL_OPENED = 0x10;
+    private static final int INITIAL_CLOSED = 0x20;
+    private static final int REPLY_OPENED = 0x01;
+    private static final int REPLY_CLOSING = 0x02;
+    private static final int REPLY_CLOSED = 0x04;
+    private static final int ABORTED = 0x40;
+
+    static int openInitial(
+        int state)
+    {
+        return state | INITIAL_OPENED;
+    }
+
+    static int closeInitial(
+        int state)
+    {
+        return state | INITIAL_CLOSED;
+    }
+
+    static boolean initialOpened(
+        int state)
+    {
+        return (state & INITIAL_OPENED) != 0;
+    }
+
+    static boolean initialClosed(
+        int state)
+    {
+        return (state & INITIAL_CLOSED) != 0;
+    }
+
+    static int openReply(
+        int state)
+    {
+        return state | REPLY_OPENED;
+    }
+
+    static int closingReply(
+        int state)
+    {
+        return state | REPLY_CLOSING;
+    }
+
+    static int closeReply(
+        int state)
+    {
+        return state | REPLY_CLOSED;
+    }
+
+    static boolean replyOpened(
+        int state)
+    {
+        return (state & REPLY_OPENED) != 0;
+    }
+
+    static boolean replyClosing(
+        int state)
+    {
+        return (state & REPLY_CLOSING) != 0;
+    }
+
+    static boolean replyClosed(
+        int state)
+    {
+        return (state & REPLY_CLOSED) != 0;
+    }
+
+    static int abort(
+        int state)
+    {
+        return state | ABORTED;
+    }
+
+    static boolean aborted(
+        int state)
+    {
+        return (state & ABORTED) != 0;
+    }
+
+    static boolean closed(
+        int state)
+    {
+        return initialClosed(state) && replyClosed(state);
+    }
+
+    private EchoState()
+    {
+        // utility
+    }
+}
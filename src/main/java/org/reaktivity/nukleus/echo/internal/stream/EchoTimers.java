@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.reaktivity.reaktor.nukleus.concurrent.Signaler.NO_CANCEL_ID;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.ObjLongConsumer;
+
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.DeadlineTimerWheel.TimerHandler;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.reaktivity.reaktor.nukleus.concurrent.Signaler;
+
+final class EchoTimers<T>
+{
+    private final DeadlineTimerWheel wheel;
+    private final Long2ObjectHashMap<T> owners;
+    private final Signaler signaler;
+    private final int signalId;
+    private final long tickMillis;
+    private final ObjLongConsumer<T> expired;
+    private final TimerHandler handler;
+    private final IntConsumer ticker;
+
+    private long tickId = NO_CANCEL_ID;
+
+    EchoTimers(
+        Signaler signaler,
+        int signalId,
+        long tickMillis,
+        int ticksPerWheel,
+        ObjLongConsumer<T> expired)
+    {
+        this.wheel = new DeadlineTimerWheel(MILLISECONDS, currentTimeMillis(), tickMillis, ticksPerWheel);
+        this.owners = new Long2ObjectHashMap<>();
+        this.signaler = signaler;
+        this.signalId = signalId;
+        this.tickMillis = tickMillis;
+        this.expired = expired;
+        this.handler = this::onTimerExpiry;
+        this.ticker = this::onTick;
+    }
+
+    long schedule(
+        T owner,
+        long deadline)
+    {
+        final long now = currentTimeMillis();
+
+        if (wheel.timerCount() == 0L)
+        {
+            wheel.resetStartTime(now);
+        }
+
+        final long timerId = wheel.scheduleTimer(deadline);
+        owners.put(timerId, owner);
+
+        if (tickId == NO_CANCEL_ID)
+        {
+            tickId = signaler.signalAt(now + tickMillis, signalId, ticker);
+        }
+
+        return timerId;
+    }
+
+    void cancel(
+        long timerId)
+    {
+        wheel.cancelTimer(timerId);
+        owners.remove(timerId);
+    }
+
+    private void onTick(
+        int signalId)
+    {
+        final long now = currentTimeMillis();
+
+        tickId = NO_CANCEL_ID;
+
+        do
+        {
+            wheel.poll(now, handler, Integer.MAX_VALUE);
+        }
+        while (wheel.currentTickTime() <= now);
+
+        if (wheel.timerCount() != 0L && tickId == NO_CANCEL_ID)
+        {
+            tickId = signaler.signalAt(now + tickMillis, signalId, ticker);
+        }
+    }
+
+    private boolean onTimerExpiry(
+        TimeUnit timeUnit,
+        long now,
+        long timerId)
+    {
+        final T owner = owners.remove(timerId);
+
+        if (owner != null)
+        {
+            expired.accept(owner, timerId);
+        }
+
+        return true;
+    }
+}
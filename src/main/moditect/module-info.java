@@ -19,4 +19,10 @@ module org.reaktivity.nukleus.echo
 
     provides org.reaktivity.reaktor.nukleus.NukleusFactorySpi
         with org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+
+    provides org.reaktivity.reaktor.config.OptionsAdapterSpi
+        with org.reaktivity.nukleus.echo.internal.config.EchoOptionsAdapter;
+
+    provides org.reaktivity.reaktor.config.ConditionAdapterSpi
+        with org.reaktivity.nukleus.echo.internal.config.EchoConditionAdapter;
 }
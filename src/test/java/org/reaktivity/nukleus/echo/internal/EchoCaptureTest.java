@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EchoCaptureTest
+{
+    private static final int CAPACITY = 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+
+    @Test
+    public void shouldCaptureAndReadFrames() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("capture");
+        final MutableDirectBuffer frame = new UnsafeBuffer(new byte[64]);
+        frame.putLong(0, 0x0102_0304_0506_0708L);
+
+        try (EchoCapture capture = new EchoCapture(path, CAPACITY, frames::incrementAndGet, drops::incrementAndGet))
+        {
+            capture.record(0x02, 1L, frame, 0, frame.capacity());
+            capture.record(0x03, 1L, frame, 0, Long.BYTES);
+        }
+
+        final AtomicLong read = new AtomicLong();
+        try (EchoCaptureReader reader = new EchoCaptureReader(path))
+        {
+            final int count = reader.forEach((t, ts, s, b, i, l) ->
+            {
+                assertEquals(1L, s);
+                assertEquals(0x0102_0304_0506_0708L, b.getLong(i));
+                assertTrue(ts > 0L);
+                read.addAndGet(l);
+            });
+
+            assertEquals(2, count);
+        }
+
+        assertEquals(2L, frames.get());
+        assertEquals(frame.capacity() + Long.BYTES, read.get());
+    }
+
+    @Test
+    public void shouldEvictOldestFramesWhenFull() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("capture");
+        final MutableDirectBuffer frame = new UnsafeBuffer(new byte[64]);
+        final int count = 2 * CAPACITY / frame.capacity();
+
+        try (EchoCapture capture = new EchoCapture(path, CAPACITY, frames::incrementAndGet, drops::incrementAndGet))
+        {
+            for (int i = 0; i < count; i++)
+            {
+                capture.record(0x02, i, frame, 0, frame.capacity());
+            }
+        }
+
+        assertEquals(count, frames.get());
+        assertEquals(0L, drops.get());
+
+        final AtomicLong lastStreamId = new AtomicLong(-1L);
+        try (EchoCaptureReader reader = new EchoCaptureReader(path))
+        {
+            final int read = reader.forEach((t, ts, s, b, i, l) ->
+            {
+                assertTrue(s > lastStreamId.get());
+                lastStreamId.set(s);
+            });
+
+            assertTrue(read > 0 && read < count);
+        }
+
+        assertEquals(count - 1L, lastStreamId.get());
+    }
+
+    @Test
+    public void shouldDropFramesLargerThanRing() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("capture");
+        final MutableDirectBuffer frame = new UnsafeBuffer(new byte[CAPACITY]);
+
+        try (EchoCapture capture = new EchoCapture(path, CAPACITY, frames::incrementAndGet, drops::incrementAndGet))
+        {
+            capture.record(0x02, 1L, frame, 0, frame.capacity());
+        }
+
+        assertEquals(0L, frames.get());
+        assertEquals(1L, drops.get());
+    }
+}
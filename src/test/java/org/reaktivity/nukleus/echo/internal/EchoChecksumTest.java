@@ -0,0 +1,58 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class EchoChecksumTest
+{
+    private static final int LENGTH = 1024;
+    private static final int OFFSET = 16;
+
+    @Test
+    public void shouldMatchCrc32cForHeapAndDirectBuffers()
+    {
+        final byte[] bytes = new byte[LENGTH];
+        for (int index = 0; index < bytes.length; index++)
+        {
+            bytes[index] = (byte) index;
+        }
+
+        final CRC32C expected = new CRC32C();
+        expected.update(bytes, OFFSET, LENGTH - OFFSET);
+
+        final MutableDirectBuffer heap = new UnsafeBuffer(bytes);
+        final MutableDirectBuffer direct = new UnsafeBuffer(ByteBuffer.allocateDirect(LENGTH + OFFSET), OFFSET, LENGTH);
+        direct.putBytes(0, bytes);
+
+        final EchoChecksum heapChecksum = new EchoChecksum();
+        heapChecksum.update(heap, OFFSET, LENGTH - OFFSET);
+
+        final EchoChecksum directChecksum = new EchoChecksum();
+        directChecksum.update(direct, OFFSET, LENGTH / 2 - OFFSET);
+        directChecksum.update(direct, LENGTH / 2, LENGTH / 2);
+
+        assertEquals((int) expected.getValue(), heapChecksum.value());
+        assertEquals((int) expected.getValue(), directChecksum.value());
+    }
+}
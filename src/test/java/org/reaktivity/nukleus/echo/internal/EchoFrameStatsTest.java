@@ -0,0 +1,52 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.nukleus.echo.internal.EchoFrameStats.SIZE_BUCKET_COUNT;
+
+import org.junit.Test;
+
+public class EchoFrameStatsTest
+{
+    @Test
+    public void shouldIndexSizesWithinPowerOfTwoBuckets()
+    {
+        long lowerBound = 0L;
+
+        for (int index = 0; index < SIZE_BUCKET_COUNT; index++)
+        {
+            final long upperBound = EchoFrameStats.upperBound(index);
+
+            assertEquals(index, EchoFrameStats.sizeIndex((int) lowerBound));
+            assertEquals(index, EchoFrameStats.sizeIndex((int) upperBound));
+
+            lowerBound = upperBound + 1L;
+        }
+    }
+
+    @Test
+    public void shouldIndexMissingPayloadIntoFirstBucket()
+    {
+        assertEquals(0, EchoFrameStats.sizeIndex(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSampleNotPowerOfTwo()
+    {
+        new EchoFrameStats(null, 1L, 3);
+    }
+}
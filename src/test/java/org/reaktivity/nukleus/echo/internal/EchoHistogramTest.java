@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.nukleus.echo.internal.EchoHistogram.MAX_MAGNITUDE;
+import static org.reaktivity.nukleus.echo.internal.EchoHistogram.OVERFLOW_INDEX;
+
+import org.junit.Test;
+
+public class EchoHistogramTest
+{
+    @Test
+    public void shouldIndexContiguousBucketsUpToOverflow()
+    {
+        long lowerBound = 0L;
+
+        for (int index = 0; index <= OVERFLOW_INDEX; index++)
+        {
+            final long upperBound = EchoHistogram.upperBound(index);
+
+            assertEquals(lowerBound, EchoHistogram.lowerBound(index));
+            assertEquals(index, EchoHistogram.index(lowerBound));
+            assertEquals(index, EchoHistogram.index(upperBound));
+
+            lowerBound = upperBound + 1L;
+        }
+    }
+
+    @Test
+    public void shouldIndexLargestMagnitudeBeforeOverflow()
+    {
+        final long overflow = 1L << (MAX_MAGNITUDE + 1);
+
+        assertEquals(OVERFLOW_INDEX - 1, EchoHistogram.index(overflow - 1L));
+        assertEquals(OVERFLOW_INDEX, EchoHistogram.index(overflow));
+        assertEquals(overflow - 1L, EchoHistogram.upperBound(OVERFLOW_INDEX - 1));
+    }
+
+    @Test
+    public void shouldIndexOverflowIntoOwnBucket()
+    {
+        assertEquals(OVERFLOW_INDEX, EchoHistogram.index(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, EchoHistogram.upperBound(OVERFLOW_INDEX));
+    }
+
+    @Test
+    public void shouldIndexNegativeIntoFirstBucket()
+    {
+        assertEquals(0, EchoHistogram.index(-1L));
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.nukleus.echo.internal.config.EchoBinding.NO_ROUTE_ID;
+
+import org.junit.Test;
+
+public class EchoRouteIndexTest
+{
+    @Test
+    public void shouldResolveFirstSatisfiedRouteInOrder()
+    {
+        final EchoRouteIndex index = new EchoRouteIndex(
+            new long[] { 0x0101L, 0x0001L, 0L },
+            new long[] { 1L, 2L, 3L });
+
+        assertEquals(1L, index.resolve(0x0101L));
+        assertEquals(1L, index.resolve(0xff01_0301L));
+        assertEquals(2L, index.resolve(0x0201L));
+        assertEquals(3L, index.resolve(0x0100L));
+    }
+
+    @Test
+    public void shouldResolveAcrossHighAuthorizationBytes()
+    {
+        final EchoRouteIndex index = new EchoRouteIndex(
+            new long[] { 0x8000_0000_0000_0001L },
+            new long[] { 7L });
+
+        assertEquals(7L, index.resolve(0x8000_0000_0000_0001L));
+        assertEquals(NO_ROUTE_ID, index.resolve(0x0000_0000_0000_0001L));
+        assertEquals(NO_ROUTE_ID, index.resolve(0x8000_0000_0000_0000L));
+    }
+
+    @Test
+    public void shouldNotResolveWithoutRoutes()
+    {
+        final EchoRouteIndex index = new EchoRouteIndex(new long[0], new long[0]);
+
+        assertEquals(NO_ROUTE_ID, index.resolve(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTooManyConditions()
+    {
+        final int count = EchoRouteIndex.CONDITIONS_MAX + 1;
+        new EchoRouteIndex(new long[count], new long[count]);
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class EchoTokenBucketTest
+{
+    private final EchoTokenBucket bucket = new EchoTokenBucket();
+
+    @Test
+    public void shouldStartWithBurst()
+    {
+        bucket.reset(10_000L, 0L);
+
+        assertEquals(1_000L, bucket.available(0L));
+    }
+
+    @Test
+    public void shouldRefillAtRate()
+    {
+        bucket.reset(10_000L, 0L);
+        bucket.consume(1_000L);
+
+        assertEquals(0L, bucket.available(0L));
+        assertEquals(100L, bucket.available(MILLISECONDS.toNanos(10L)));
+        assertEquals(150L, bucket.available(MILLISECONDS.toNanos(15L)));
+    }
+
+    @Test
+    public void shouldNotRefillBeyondBurst()
+    {
+        bucket.reset(10_000L, 0L);
+        bucket.consume(500L);
+
+        assertEquals(1_000L, bucket.available(MILLISECONDS.toNanos(1_000L)));
+    }
+
+    @Test
+    public void shouldNotLimitWithoutRate()
+    {
+        bucket.reset(0L, 0L);
+        bucket.consume(1_000L);
+
+        assertEquals(Long.MAX_VALUE, bucket.available(0L));
+    }
+}
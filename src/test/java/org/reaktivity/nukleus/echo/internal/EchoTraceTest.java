@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.reaktivity.nukleus.echo.internal.EchoTrace.PHASE_RECEIVED;
+import static org.reaktivity.nukleus.echo.internal.EchoTrace.PHASE_REFLECTED;
+
+import java.nio.file.Path;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+
+public class EchoTraceTest
+{
+    private static final int CAPACITY = 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSampleOneInEveryInterval() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("trace");
+
+        try (EchoTrace trace = new EchoTrace(path, CAPACITY, 3, 0L))
+        {
+            assertFalse(trace.sampled(0L));
+            assertFalse(trace.sampled(1L));
+            assertFalse(trace.sampled(3L));
+            assertTrue(trace.sampled(4L));
+            assertTrue(trace.sampled(8L));
+        }
+    }
+
+    @Test
+    public void shouldSampleMatchingMask() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("trace");
+
+        try (EchoTrace trace = new EchoTrace(path, CAPACITY, 0, 0x8000_0000_0000_0000L))
+        {
+            assertTrue(trace.sampled(0x8000_0000_0000_0005L));
+            assertFalse(trace.sampled(0x0000_0000_0000_0005L));
+        }
+    }
+
+    @Test
+    public void shouldDropRecordsWhenFull() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("trace");
+        final MutableDirectBuffer frame = new UnsafeBuffer(new byte[64]);
+        frame.putLong(BeginFW.FIELD_OFFSET_TRACE_ID, 4L);
+
+        int recorded = 0;
+        int dropped = 0;
+
+        try (EchoTrace trace = new EchoTrace(path, CAPACITY, 1, 0L))
+        {
+            for (int i = 0; i < CAPACITY / EchoTrace.RECORD_LENGTH; i++)
+            {
+                final int phase = (i & 0x01) == 0 ? PHASE_RECEIVED : PHASE_REFLECTED;
+                if (trace.record(phase, 0x02, frame, 0, frame.capacity()))
+                {
+                    recorded++;
+                }
+                else
+                {
+                    dropped++;
+                }
+            }
+        }
+
+        assertTrue(recorded > 0);
+        assertTrue(dropped > 0);
+        assertEquals(CAPACITY / EchoTrace.RECORD_LENGTH, recorded + dropped);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.config;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class EchoOptionsAdapterTest
+{
+    private Jsonb jsonb;
+
+    @Before
+    public void initJson()
+    {
+        JsonbConfig config = new JsonbConfig()
+                .withAdapters(new EchoOptionsAdapter());
+        jsonb = JsonbBuilder.create(config);
+    }
+
+    @Test
+    public void shouldReadOptions()
+    {
+        String text = "{\"mode\":\"discard\"}";
+
+        EchoOptions options = jsonb.fromJson(text, EchoOptions.class);
+
+        assertThat(options, not(nullValue()));
+        assertThat(options.mode, equalTo(EchoMode.DISCARD));
+        assertThat(options.buffered, nullValue());
+    }
+
+    @Test
+    public void shouldReadOptionsWithFlowControl()
+    {
+        String text =
+                "{" +
+                    "\"mode\":\"echo\"," +
+                    "\"buffered\":true," +
+                    "\"coalesceLimit\":1024," +
+                    "\"coalesceDelay\":5," +
+                    "\"sharedBudget\":65536," +
+                    "\"latencyHistogram\":true," +
+                    "\"latencyTimestamp\":false" +
+                "}";
+
+        EchoOptions options = jsonb.fromJson(text, EchoOptions.class);
+
+        assertThat(options, not(nullValue()));
+        assertThat(options.mode, equalTo(EchoMode.ECHO));
+        assertThat(options.buffered, equalTo(true));
+        assertThat(options.coalesceLimit, equalTo(1024));
+        assertThat(options.coalesceDelay, equalTo(5L));
+        assertThat(options.sharedBudget, equalTo(65536));
+        assertThat(options.latencyHistogram, equalTo(true));
+        assertThat(options.latencyTimestamp, equalTo(false));
+    }
+
+    @Test
+    public void shouldReadOptionsWithRateLimits()
+    {
+        String text =
+                "{" +
+                    "\"streamRateLimit\":65536," +
+                    "\"bindingRateLimit\":1048576" +
+                "}";
+
+        EchoOptions options = jsonb.fromJson(text, EchoOptions.class);
+
+        assertThat(options, not(nullValue()));
+        assertThat(options.mode, nullValue());
+        assertThat(options.streamRateLimit, equalTo(65536L));
+        assertThat(options.bindingRateLimit, equalTo(1048576L));
+    }
+
+    @Test
+    public void shouldWriteOptions()
+    {
+        EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.CHARGEN)
+                .build();
+
+        String text = jsonb.toJson(options);
+
+        assertThat(text, not(nullValue()));
+        assertThat(text, equalTo("{\"mode\":\"chargen\"}"));
+    }
+
+    @Test
+    public void shouldWriteOptionsWithLoad()
+    {
+        EchoOptions options = EchoOptions.builder()
+                .streams(4)
+                .payloadSize(256)
+                .rate(1000L)
+                .build();
+
+        String text = jsonb.toJson(options);
+
+        assertThat(text, not(nullValue()));
+        assertThat(text, equalTo("{\"streams\":4,\"payloadSize\":256,\"rate\":1000}"));
+    }
+}
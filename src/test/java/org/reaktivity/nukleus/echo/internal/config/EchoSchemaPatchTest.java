@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.config;
+
+import static javax.json.JsonValue.ValueType.FALSE;
+import static javax.json.JsonValue.ValueType.NUMBER;
+import static javax.json.JsonValue.ValueType.STRING;
+import static javax.json.JsonValue.ValueType.TRUE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class EchoSchemaPatchTest
+{
+    private static final String SCHEMA_PATCH = "/org/reaktivity/nukleus/echo/internal/schema/echo.schema.patch.json";
+
+    private JsonArray patch;
+
+    @Before
+    public void readPatch() throws Exception
+    {
+        try (InputStream input = getClass().getResourceAsStream(SCHEMA_PATCH);
+             JsonReader reader = Json.createReader(input))
+        {
+            patch = reader.readArray();
+        }
+    }
+
+    @Test
+    public void shouldAcceptEveryBindingOption()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.FANOUT)
+                .buffered(true)
+                .coalesceLimit(1024)
+                .coalesceDelay(5L)
+                .sharedBudget(65536)
+                .latencyHistogram(true)
+                .latencyTimestamp(true)
+                .streams(4)
+                .payloadSize(512)
+                .rate(1000L)
+                .streamRateLimit(65536L)
+                .bindingRateLimit(1048576L)
+                .delay(10L)
+                .delayJitter(2L)
+                .idleTimeout(30000L)
+                .maxStreams(128)
+                .maxAuthorizedStreams(8)
+                .capture(true)
+                .captureCapacity(1048576)
+                .replay("echo.capture")
+                .replayTiming(false)
+                .checksum(true)
+                .group("members")
+                .mirror(true)
+                .statsSample(64)
+                .build();
+
+        final JsonObject object = new EchoOptionsAdapter().adaptToJson(options);
+
+        assertValid(definition("/$defs/options/binding/echo"), object);
+    }
+
+    @Test
+    public void shouldAcceptRouteCondition()
+    {
+        final JsonObject object = new EchoConditionAdapter().adaptToJson(new EchoCondition(0x0001_0000L));
+
+        assertValid(definition("/$defs/condition/echo"), object);
+    }
+
+    private JsonObject definition(
+        String path)
+    {
+        JsonObject definition = null;
+
+        for (int index = 0; index < patch.size(); index++)
+        {
+            final JsonObject operation = patch.getJsonObject(index);
+            if (path.equals(operation.getString("path")))
+            {
+                definition = operation.getJsonObject("value");
+            }
+        }
+
+        assertNotNull(definition);
+        return definition;
+    }
+
+    private static void assertValid(
+        JsonObject schema,
+        JsonObject object)
+    {
+        final JsonObject properties = schema.getJsonObject("properties");
+
+        for (Map.Entry<String, JsonValue> entry : object.entrySet())
+        {
+            final String name = entry.getKey();
+            final JsonValue value = entry.getValue();
+            final JsonObject property = properties.getJsonObject(name);
+
+            assertNotNull(name, property);
+
+            switch (property.getString("type"))
+            {
+            case "integer":
+                assertEquals(name, NUMBER, value.getValueType());
+                assertTrue(name, ((JsonNumber) value).isIntegral());
+                if (property.containsKey("minimum"))
+                {
+                    assertTrue(name, ((JsonNumber) value).longValue() >= property.getJsonNumber("minimum").longValue());
+                }
+                break;
+            case "boolean":
+                assertTrue(name, value.getValueType() == TRUE || value.getValueType() == FALSE);
+                break;
+            case "string":
+                assertEquals(name, STRING, value.getValueType());
+                if (property.containsKey("enum"))
+                {
+                    assertTrue(name, property.getJsonArray("enum").contains(value));
+                }
+                break;
+            default:
+                throw new AssertionError(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.nio.ByteBuffer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public class EchoChargenFactoryTest
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long INITIAL_ID = 0x0000_0000_0000_0001L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+    private static final int REPLY_WINDOW = 20000;
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+
+    private final DataFW dataRO = new DataFW();
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+
+    private ElektronContextStub context;
+    private StreamFactory factory;
+
+    private long replyReserved;
+    private byte firstByte;
+
+    @Before
+    public void init()
+    {
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        this.context = new ElektronContextStub(WRITE_CAPACITY);
+        final Elektron elektron = nukleus.supplyElektron(context);
+
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.CHARGEN)
+                .build();
+        final Binding binding = new Binding(null, "chargen0", "echo", SERVER, options, emptyList(), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+    }
+
+    @Test
+    public void shouldGenerateDataWithinReplyWindow()
+    {
+        final MessageConsumer sender = this::onReply;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(REPLY_WINDOW)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+
+        final ResetFW reset = resetRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID ^ 1L)
+                .sequence(0L)
+                .acknowledge(REPLY_WINDOW)
+                .maximum(REPLY_WINDOW)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+
+        assertEquals(REPLY_WINDOW, replyReserved);
+        assertEquals(' ', firstByte);
+        assertEquals(1L, context.counter("echo.streams.aborted"));
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if (msgTypeId == DataFW.TYPE_ID)
+        {
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            final OctetsFW payload = data.payload();
+
+            if (replyReserved == 0L)
+            {
+                firstByte = payload.buffer().getByte(payload.offset());
+            }
+
+            replyReserved += data.reserved();
+        }
+    }
+}
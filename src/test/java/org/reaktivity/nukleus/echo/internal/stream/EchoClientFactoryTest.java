@@ -0,0 +1,81 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Collections.emptyList;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.reaktivity.reaktor.config.Role.CLIENT;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.config.Route;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+
+public class EchoClientFactoryTest
+{
+    private static final long SERVER_ID = 0x0001_0002_0000_0001L;
+    private static final long CLIENT_ID = 0x0001_0002_0000_0002L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+
+    private ElektronContextStub context;
+    private Elektron elektron;
+
+    @Before
+    public void init()
+    {
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        this.context = new ElektronContextStub(WRITE_CAPACITY);
+        this.elektron = nukleus.supplyElektron(context);
+
+        final Binding server = new Binding(null, "echo0", "echo", SERVER, null, emptyList(), null);
+        server.id = SERVER_ID;
+        context.streamFactory(elektron.attach(server));
+    }
+
+    @Test
+    public void shouldGenerateLoadThroughExit()
+    {
+        final Route exit = new Route(0, "echo0", emptyList());
+        exit.id = SERVER_ID;
+
+        final Binding client = new Binding(null, "load0", "echo", CLIENT, null, emptyList(), exit);
+        client.id = CLIENT_ID;
+        elektron.attach(client);
+
+        for (int tick = 0; tick < 10; tick++)
+        {
+            context.signal();
+        }
+
+        elektron.detach(client);
+
+        assertEquals(0, context.signal());
+        assertThat(context.counter("echo.load.frames.sent"), greaterThan(0L));
+        assertThat(context.counter("echo.load.bytes.received"), greaterThan(0L));
+        assertEquals(context.counter("echo.load.bytes.sent"), context.counter("echo.load.bytes.received"));
+        assertEquals(0L, context.counter("echo.load.mismatches"));
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.nio.ByteBuffer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public class EchoDiscardFactoryTest
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long LIMITED_ROUTE_ID = 0x0001_0002_0000_0002L;
+    private static final long INITIAL_ID = 0x0000_0000_0000_0001L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+
+    private final WindowFW windowRO = new WindowFW();
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+    private final MutableDirectBuffer payloadBuffer = new UnsafeBuffer(new byte[256]);
+
+    private ElektronContextStub context;
+    private Elektron elektron;
+    private StreamFactory factory;
+
+    private int replyDataFrames;
+    private int replyResetFrames;
+    private long initialAck;
+
+    @Before
+    public void init()
+    {
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        this.context = new ElektronContextStub(WRITE_CAPACITY);
+        this.elektron = nukleus.supplyElektron(context);
+
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.DISCARD)
+                .build();
+        final Binding binding = new Binding(null, "discard0", "echo", SERVER, options, emptyList(), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+    }
+
+    @Test
+    public void shouldDiscardDataAndGrantWindow()
+    {
+        final MessageConsumer sender = this::onReply;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(0x03)
+                .budgetId(0L)
+                .reserved(payloadBuffer.capacity())
+                .payload(payloadBuffer, 0, payloadBuffer.capacity())
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(payloadBuffer.capacity())
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+
+        assertEquals(0, replyDataFrames);
+        assertEquals(payloadBuffer.capacity(), initialAck);
+        assertEquals(1L, context.counter("echo.streams.closed"));
+    }
+
+    @Test
+    public void shouldRejectStreamsBeyondLimit()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.DISCARD)
+                .maxStreams(1)
+                .build();
+        final Binding binding = new Binding(null, "discard1", "echo", SERVER, options, emptyList(), null);
+        binding.id = LIMITED_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+
+        final MessageConsumer stream = newStream(factory, INITIAL_ID);
+        assertNotNull(stream);
+        assertNull(newStream(factory, INITIAL_ID + 2L));
+        assertEquals(1, replyResetFrames);
+        assertEquals(1L, context.counter("echo.streams.rejected"));
+
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(LIMITED_ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+
+        assertEquals(0L, context.counter("echo.streams.active"));
+        assertNotNull(newStream(factory, INITIAL_ID + 4L));
+    }
+
+    private MessageConsumer newStream(
+        StreamFactory factory,
+        long initialId)
+    {
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(LIMITED_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+
+        final MessageConsumer sender = this::onReply;
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+
+        if (stream != null)
+        {
+            stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+        }
+
+        return stream;
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        switch (msgTypeId)
+        {
+        case DataFW.TYPE_ID:
+            replyDataFrames++;
+            break;
+        case ResetFW.TYPE_ID:
+            replyResetFrames++;
+            break;
+        case WindowFW.TYPE_ID:
+            initialAck = windowRO.wrap(buffer, index, index + length).acknowledge();
+            break;
+        default:
+            break;
+        }
+    }
+}
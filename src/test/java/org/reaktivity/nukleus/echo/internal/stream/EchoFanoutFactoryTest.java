@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.nio.ByteBuffer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public class EchoFanoutFactoryTest
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long PUBLISHER_ID = 0x0000_0000_0000_0001L;
+    private static final long SUBSCRIBER_ID = 0x0000_0000_0000_0003L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+    private static final int PAYLOAD_SIZE = 200;
+    private static final long PUBLISHER_AUTHORIZATION = 0x0011L;
+    private static final long SUBSCRIBER_AUTHORIZATION = 0x0022L;
+    private static final int RECORDED_FRAMES = 16;
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final DataFW dataRO = new DataFW();
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+    private final Long2LongHashMap replyBytes = new Long2LongHashMap(0L);
+    private final int[] subscriberFlags = new int[RECORDED_FRAMES];
+    private final long[] subscriberAuthorizations = new long[RECORDED_FRAMES];
+
+    private int subscriberFrames;
+
+    private ElektronContextStub context;
+    private StreamFactory factory;
+
+    @Before
+    public void init()
+    {
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        this.context = new ElektronContextStub(WRITE_CAPACITY);
+        final Elektron elektron = nukleus.supplyElektron(context);
+
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.FANOUT)
+                .build();
+        final Binding binding = new Binding(null, "fanout0", "echo", SERVER, options, emptyList(), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+    }
+
+    @Test
+    public void shouldFanOutDataAndSkipSlowMembers()
+    {
+        final MessageConsumer publisher = openMember(PUBLISHER_ID, 0L, PAYLOAD_SIZE * 4);
+        final MessageConsumer subscriber = openMember(SUBSCRIBER_ID, 0L, PAYLOAD_SIZE / 2);
+
+        doData(publisher, PUBLISHER_ID, 0L, 0x03, 0L);
+
+        assertEquals(PAYLOAD_SIZE, replyBytes.get(PUBLISHER_ID ^ 1L));
+        assertEquals(0L, replyBytes.get(SUBSCRIBER_ID ^ 1L));
+        assertEquals(1L, context.counter("echo.fanout.skipped"));
+
+        doWindow(subscriber, SUBSCRIBER_ID, PAYLOAD_SIZE * 4);
+        doData(publisher, PUBLISHER_ID, PAYLOAD_SIZE, 0x03, 0L);
+
+        assertEquals(PAYLOAD_SIZE * 2, replyBytes.get(PUBLISHER_ID ^ 1L));
+        assertEquals(PAYLOAD_SIZE, replyBytes.get(SUBSCRIBER_ID ^ 1L));
+        assertEquals(3L, context.counter("echo.fanout.delivered"));
+    }
+
+    @Test
+    public void shouldSkipRestOfFragmentedMessageAndMarkItIncomplete()
+    {
+        final MessageConsumer publisher = openMember(PUBLISHER_ID, PUBLISHER_AUTHORIZATION, PAYLOAD_SIZE * 8);
+        final MessageConsumer subscriber = openMember(SUBSCRIBER_ID, SUBSCRIBER_AUTHORIZATION, PAYLOAD_SIZE);
+
+        doData(publisher, PUBLISHER_ID, 0L, 0x02, PUBLISHER_AUTHORIZATION);
+        doData(publisher, PUBLISHER_ID, PAYLOAD_SIZE, 0x00, PUBLISHER_AUTHORIZATION);
+
+        doWindow(subscriber, SUBSCRIBER_ID, PAYLOAD_SIZE * 4);
+        doData(publisher, PUBLISHER_ID, PAYLOAD_SIZE * 2, 0x01, PUBLISHER_AUTHORIZATION);
+        doData(publisher, PUBLISHER_ID, PAYLOAD_SIZE * 3, 0x03, PUBLISHER_AUTHORIZATION);
+
+        assertArrayEquals(new int[] { 0x02, 0x05, 0x03 }, copyOf(subscriberFlags, subscriberFrames));
+        assertArrayEquals(new long[] { SUBSCRIBER_AUTHORIZATION, SUBSCRIBER_AUTHORIZATION, SUBSCRIBER_AUTHORIZATION },
+                copyOf(subscriberAuthorizations, subscriberFrames));
+        assertEquals(PAYLOAD_SIZE * 4, replyBytes.get(PUBLISHER_ID ^ 1L));
+        assertEquals(2L, context.counter("echo.fanout.skipped"));
+    }
+
+    private MessageConsumer openMember(
+        long initialId,
+        long authorization,
+        int replyWindow)
+    {
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(authorization)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream =
+                factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), this::onReply);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        doWindow(stream, initialId, replyWindow);
+
+        return stream;
+    }
+
+    private void doWindow(
+        MessageConsumer stream,
+        long initialId,
+        int replyWindow)
+    {
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(replyWindow)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+
+    private void doData(
+        MessageConsumer stream,
+        long initialId,
+        long sequence,
+        int flags,
+        long authorization)
+    {
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(sequence)
+                .acknowledge(sequence)
+                .maximum(WRITE_CAPACITY)
+                .traceId(0L)
+                .authorization(authorization)
+                .flags(flags)
+                .budgetId(0L)
+                .reserved(PAYLOAD_SIZE)
+                .payload(new UnsafeBuffer(new byte[PAYLOAD_SIZE]), 0, PAYLOAD_SIZE)
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if (msgTypeId == DataFW.TYPE_ID)
+        {
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            final long streamId = data.streamId();
+            replyBytes.put(streamId, replyBytes.get(streamId) + data.reserved());
+
+            if (streamId == (SUBSCRIBER_ID ^ 1L) && subscriberFrames < RECORDED_FRAMES)
+            {
+                subscriberFlags[subscriberFrames] = data.flags();
+                subscriberAuthorizations[subscriberFrames] = data.authorization();
+                subscriberFrames++;
+            }
+        }
+    }
+}
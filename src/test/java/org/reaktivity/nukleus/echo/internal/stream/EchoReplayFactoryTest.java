@@ -0,0 +1,197 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.nukleus.echo.internal.EchoCapture;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public class EchoReplayFactoryTest
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long INITIAL_ID = 0x0000_0000_0000_0001L;
+    private static final long CAPTURED_ID = 0x0000_0000_0000_0003L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+    private static final int CAPTURE_CAPACITY = 64 * 1024;
+    private static final int PAYLOAD_SIZE = 100;
+    private static final int CAPTURED_FRAMES = 3;
+    private static final long CAPTURED_TRACE_ID = 0x0000_0000_0000_0011L;
+    private static final long CAPTURED_AUTHORIZATION = 0x0000_0000_0000_0077L;
+    private static final long REPLAY_TRACE_ID = 0x0000_0000_0000_0021L;
+    private static final long REPLAY_AUTHORIZATION = 0x0000_0000_0000_0022L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final DataFW dataRO = new DataFW();
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+
+    private StreamFactory factory;
+
+    private long replyReserved;
+    private long replyStreamId;
+    private long replyTraceId;
+    private long replyAuthorization;
+    private int replyEnds;
+
+    @Before
+    public void init() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("capture");
+
+        try (EchoCapture capture = new EchoCapture(path, CAPTURE_CAPACITY, () -> 0L, () -> 0L))
+        {
+            for (int frame = 0; frame < CAPTURED_FRAMES; frame++)
+            {
+                final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                        .routeId(ROUTE_ID)
+                        .streamId(CAPTURED_ID)
+                        .sequence(frame * PAYLOAD_SIZE)
+                        .acknowledge(0L)
+                        .maximum(CAPTURE_CAPACITY)
+                        .traceId(CAPTURED_TRACE_ID)
+                        .authorization(CAPTURED_AUTHORIZATION)
+                        .flags(0x03)
+                        .budgetId(0L)
+                        .reserved(PAYLOAD_SIZE)
+                        .payload(new UnsafeBuffer(new byte[PAYLOAD_SIZE]), 0, PAYLOAD_SIZE)
+                        .build();
+                capture.record(data.typeId(), CAPTURED_ID, data.buffer(), data.offset(), data.sizeof());
+                capture.record(data.typeId(), CAPTURED_ID ^ 1L, data.buffer(), data.offset(), data.sizeof());
+            }
+        }
+
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        final ElektronContextStub context = new ElektronContextStub(WRITE_CAPACITY);
+        final Elektron elektron = nukleus.supplyElektron(context);
+
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.REPLAY)
+                .replay(path.toString())
+                .replayTiming(false)
+                .build();
+        final Binding binding = new Binding(null, "replay0", "echo", SERVER, options, emptyList(), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+    }
+
+    @Test
+    public void shouldReplayCapturedDataWithinReplyWindow()
+    {
+        final MessageConsumer sender = this::onReply;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(REPLAY_TRACE_ID)
+                .authorization(REPLAY_AUTHORIZATION)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        doReplyWindow(stream, 0L, PAYLOAD_SIZE * 2 + PAYLOAD_SIZE / 2);
+
+        assertEquals(PAYLOAD_SIZE * 2, replyReserved);
+        assertEquals(INITIAL_ID ^ 1L, replyStreamId);
+        assertEquals(REPLAY_TRACE_ID, replyTraceId);
+        assertEquals(REPLAY_AUTHORIZATION, replyAuthorization);
+        assertEquals(0, replyEnds);
+
+        doReplyWindow(stream, replyReserved, PAYLOAD_SIZE * 2);
+
+        assertEquals(PAYLOAD_SIZE * CAPTURED_FRAMES, replyReserved);
+        assertEquals(1, replyEnds);
+    }
+
+    private void doReplyWindow(
+        MessageConsumer stream,
+        long acknowledge,
+        int maximum)
+    {
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID ^ 1L)
+                .sequence(replyReserved)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(REPLAY_TRACE_ID)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        switch (msgTypeId)
+        {
+        case DataFW.TYPE_ID:
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            replyStreamId = data.streamId();
+            replyTraceId = data.traceId();
+            replyAuthorization = data.authorization();
+            replyReserved += data.reserved();
+            break;
+        case EndFW.TYPE_ID:
+            replyEnds++;
+            break;
+        default:
+            break;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.nio.ByteBuffer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoCondition;
+import org.reaktivity.nukleus.echo.internal.config.EchoMode;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.config.Route;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+public class EchoRouteFactoryTest
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long DISCARD_ROUTE_ID = 0x0001_0002_0000_0002L;
+    private static final long AUTHORIZED = 0x0000_0000_0000_0001L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+
+    private ElektronContextStub context;
+    private StreamFactory factory;
+
+    private int replyResetFrames;
+
+    @Before
+    public void init()
+    {
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        this.context = new ElektronContextStub(WRITE_CAPACITY);
+        final Elektron elektron = nukleus.supplyElektron(context);
+
+        final EchoOptions options = EchoOptions.builder()
+                .mode(EchoMode.DISCARD)
+                .build();
+        final Binding discard = new Binding(null, "discard0", "echo", SERVER, options, emptyList(), null);
+        discard.id = DISCARD_ROUTE_ID;
+        elektron.attach(discard);
+
+        final Route route = new Route(0, "discard0", singletonList(new EchoCondition(AUTHORIZED)));
+        route.id = DISCARD_ROUTE_ID;
+
+        final Binding binding = new Binding(null, "echo0", "echo", SERVER, null, singletonList(route), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+    }
+
+    @Test
+    public void shouldRouteAuthorizedStream()
+    {
+        assertNotNull(newStream(1L, AUTHORIZED | 0x0100L));
+        assertEquals(0, replyResetFrames);
+        assertEquals(1L, context.counter("echo.begin.frames"));
+    }
+
+    @Test
+    public void shouldResetUnauthorizedStream()
+    {
+        assertNull(newStream(1L, 0x0100L));
+        assertEquals(1, replyResetFrames);
+    }
+
+    private MessageConsumer newStream(
+        long initialId,
+        long authorization)
+    {
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(authorization)
+                .affinity(0L)
+                .build();
+
+        final MessageConsumer sender = this::onReply;
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+
+        if (stream != null)
+        {
+            stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+        }
+
+        return stream;
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if (msgTypeId == ResetFW.TYPE_ID)
+        {
+            replyResetFrames++;
+        }
+    }
+}
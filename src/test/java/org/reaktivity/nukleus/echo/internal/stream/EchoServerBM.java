@@ -0,0 +1,332 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.nio.ByteBuffer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.FlushFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+public class EchoServerBM
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long INITIAL_ID = 0x0000_0000_0000_0001L;
+    private static final int WRITE_CAPACITY = 128 * 1024;
+    private static final int REPLY_WINDOW = 1024 * 1024;
+
+    private final DataFW dataRO = new DataFW();
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+    private final FlushFW.Builder flushRW = new FlushFW.Builder();
+    private final ResetFW.Builder resetRW = new ResetFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+    private final MutableDirectBuffer payloadBuffer = new UnsafeBuffer(new byte[WRITE_CAPACITY]);
+
+    @Param({"0", "64", "1024", "16384", "65536"})
+    public int payloadSize;
+
+    @Param({"false", "true"})
+    public boolean checksum;
+
+    private StreamFactory factory;
+    private MessageConsumer sender;
+    private MessageConsumer stream;
+    private long streamId;
+    private long replyBytes;
+
+    private long initialSeq;
+    private long replySeq;
+    private long replyAck;
+
+    private DirectBuffer beginBuffer;
+    private int beginLength;
+    private MutableDirectBuffer dataBuffer;
+    private int dataLength;
+    private MutableDirectBuffer flushBuffer;
+    private int flushLength;
+    private MutableDirectBuffer windowBuffer;
+    private int windowLength;
+
+    @Setup(Level.Trial)
+    public void init()
+    {
+        final ElektronContextStub context = new ElektronContextStub(WRITE_CAPACITY);
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+        final Elektron elektron = nukleus.supplyElektron(context);
+
+        final EchoOptions options = EchoOptions.builder()
+                .checksum(checksum)
+                .build();
+        final Binding binding = new Binding(null, "echo0", "echo", SERVER, options, emptyList(), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+        this.sender = this::onReply;
+
+        this.beginLength = encodeBegin(INITIAL_ID);
+        this.beginBuffer = copyOf(frameBuffer, beginLength);
+
+        this.dataLength = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(Integer.MAX_VALUE)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(0x03)
+                .budgetId(0L)
+                .reserved(payloadSize)
+                .payload(payloadBuffer, 0, payloadSize)
+                .build()
+                .sizeof();
+        this.dataBuffer = copyOf(frameBuffer, dataLength);
+
+        this.flushLength = flushRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(Integer.MAX_VALUE)
+                .traceId(0L)
+                .authorization(0L)
+                .budgetId(0L)
+                .reserved(0)
+                .build()
+                .sizeof();
+        this.flushBuffer = copyOf(frameBuffer, flushLength);
+
+        this.windowLength = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(INITIAL_ID ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(REPLY_WINDOW)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build()
+                .sizeof();
+        this.windowBuffer = copyOf(frameBuffer, windowLength);
+    }
+
+    @Setup(Level.Iteration)
+    public void open()
+    {
+        this.stream = factory.newStream(BeginFW.TYPE_ID, beginBuffer, 0, beginLength, sender);
+        stream.accept(BeginFW.TYPE_ID, beginBuffer, 0, beginLength);
+        this.streamId = INITIAL_ID;
+        this.initialSeq = 0L;
+        this.replySeq = 0L;
+        this.replyAck = 0L;
+        acknowledge();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close()
+    {
+        closeStream(stream, INITIAL_ID, initialSeq);
+    }
+
+    @Benchmark
+    public long newStream()
+    {
+        final long initialId = streamId += 2L;
+        final int length = encodeBegin(initialId);
+        final MessageConsumer newStream = factory.newStream(BeginFW.TYPE_ID, frameBuffer, 0, length, sender);
+
+        newStream.accept(BeginFW.TYPE_ID, frameBuffer, 0, length);
+        closeStream(newStream, initialId, 0L);
+
+        return replyBytes;
+    }
+
+    @Benchmark
+    public long data()
+    {
+        dataBuffer.putLong(DataFW.FIELD_OFFSET_SEQUENCE, initialSeq);
+        stream.accept(DataFW.TYPE_ID, dataBuffer, 0, dataLength);
+        initialSeq += payloadSize;
+
+        if (replySeq - replyAck >= REPLY_WINDOW >> 1)
+        {
+            acknowledge();
+        }
+
+        return replyBytes;
+    }
+
+    @Benchmark
+    public long flush()
+    {
+        flushBuffer.putLong(FlushFW.FIELD_OFFSET_SEQUENCE, initialSeq);
+        stream.accept(FlushFW.TYPE_ID, flushBuffer, 0, flushLength);
+        return replyBytes;
+    }
+
+    @Benchmark
+    public long window()
+    {
+        stream.accept(WindowFW.TYPE_ID, windowBuffer, 0, windowLength);
+        return replyBytes;
+    }
+
+    private void acknowledge()
+    {
+        windowBuffer.putLong(WindowFW.FIELD_OFFSET_SEQUENCE, replySeq);
+        windowBuffer.putLong(WindowFW.FIELD_OFFSET_ACKNOWLEDGE, replySeq);
+        stream.accept(WindowFW.TYPE_ID, windowBuffer, 0, windowLength);
+        replyAck = replySeq;
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if (msgTypeId == DataFW.TYPE_ID)
+        {
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            replySeq = data.sequence() + data.reserved();
+        }
+
+        replyBytes += length;
+    }
+
+    private void closeStream(
+        MessageConsumer stream,
+        long initialId,
+        long sequence)
+    {
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(sequence)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+
+        final ResetFW reset = resetRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(reset.typeId(), reset.buffer(), reset.offset(), reset.sizeof());
+    }
+
+    private int encodeBegin(
+        long initialId)
+    {
+        return beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build()
+                .sizeof();
+    }
+
+    private static MutableDirectBuffer copyOf(
+        DirectBuffer buffer,
+        int length)
+    {
+        final MutableDirectBuffer copy = new UnsafeBuffer(ByteBuffer.allocateDirect(Math.max(length, 1)));
+        copy.putBytes(0, buffer, 0, length);
+        return copy;
+    }
+
+    public static void main(
+        String[] args) throws RunnerException
+    {
+        final Options throughput = new OptionsBuilder()
+                .include(EchoServerBM.class.getSimpleName())
+                .mode(Mode.Throughput)
+                .timeUnit(SECONDS)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(throughput).run();
+
+        final Options latency = new OptionsBuilder()
+                .include(EchoServerBM.class.getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(NANOSECONDS)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(latency).run();
+    }
+}
@@ -0,0 +1,827 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.reaktivity.reaktor.config.Role.SERVER;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.reaktivity.nukleus.echo.internal.EchoChecksum;
+import org.reaktivity.nukleus.echo.internal.EchoEndEx;
+import org.reaktivity.nukleus.echo.internal.EchoNukleusFactorySpi;
+import org.reaktivity.nukleus.echo.internal.config.EchoOptions;
+import org.reaktivity.nukleus.echo.internal.types.OctetsFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.AbortFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.DataFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.EndFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.echo.internal.types.stream.WindowFW;
+import org.reaktivity.reaktor.config.Binding;
+import org.reaktivity.reaktor.config.Route;
+import org.reaktivity.reaktor.nukleus.Configuration;
+import org.reaktivity.reaktor.nukleus.Elektron;
+import org.reaktivity.reaktor.nukleus.Nukleus;
+import org.reaktivity.reaktor.nukleus.NukleusFactorySpi;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+import com.sun.management.ThreadMXBean;
+
+public class EchoServerFactoryTest
+{
+    private static final long ROUTE_ID = 0x0001_0002_0000_0001L;
+    private static final long DELAYED_ROUTE_ID = 0x0001_0002_0000_0002L;
+    private static final long IDLE_ROUTE_ID = 0x0001_0002_0000_0003L;
+    private static final long LIMITED_ROUTE_ID = 0x0001_0002_0000_0004L;
+    private static final long MIRRORED_ROUTE_ID = 0x0001_0002_0000_0005L;
+    private static final long SHADOW_ROUTE_ID = 0x0001_0002_0000_0006L;
+    private static final long BUFFERED_ROUTE_ID = 0x0001_0002_0000_0007L;
+    private static final long COALESCED_ROUTE_ID = 0x0001_0002_0000_0008L;
+    private static final long CHECKSUM_ROUTE_ID = 0x0001_0002_0000_0009L;
+    private static final long INITIAL_BUDGET_ID = 0x0000_0000_0000_0003L;
+    private static final long REPLY_BUDGET_ID = 0x0000_0000_0000_0007L;
+    private static final long DELAY_MILLIS = 5L;
+    private static final long IDLE_TIMEOUT_MILLIS = 1L;
+    private static final int WRITE_CAPACITY = 64 * 1024;
+    private static final int WARMUP_STREAMS = 100_000;
+    private static final int MEASURED_STREAMS = 10_000;
+    private static final int RECORDED_FRAMES = 16;
+
+    private final BeginFW.Builder beginRW = new BeginFW.Builder();
+    private final DataFW.Builder dataRW = new DataFW.Builder();
+    private final EndFW.Builder endRW = new EndFW.Builder();
+    private final WindowFW.Builder windowRW = new WindowFW.Builder();
+
+    private final DataFW dataRO = new DataFW();
+    private final WindowFW windowRO = new WindowFW();
+    private final EndFW endRO = new EndFW();
+    private final EchoEndEx endExRO = new EchoEndEx();
+    private final int[] replyFlags = new int[RECORDED_FRAMES];
+    private final int[] replyLengths = new int[RECORDED_FRAMES];
+
+    private final MutableDirectBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(WRITE_CAPACITY));
+    private final MutableDirectBuffer payloadBuffer = new UnsafeBuffer(new byte[256]);
+
+    private ElektronContextStub context;
+    private Elektron elektron;
+    private StreamFactory factory;
+    private MessageConsumer sender;
+    private long replyBytes;
+    private int replyDataFrames;
+    private long replyBudgetId;
+    private long replyDataId;
+    private DirectBuffer replyDataBuffer;
+    private long initialAck;
+    private int replyChecksum;
+    private int replyEndFrames;
+    private int replyResetFrames;
+    private int replyAbortFrames;
+    private MessageConsumer mirrorSender;
+    private long mirrorDataId;
+    private int mirrorDataFrames;
+
+    @Before
+    public void init()
+    {
+        final NukleusFactorySpi factorySpi = new EchoNukleusFactorySpi();
+        final Nukleus nukleus = factorySpi.create(new Configuration());
+
+        this.context = new ElektronContextStub(WRITE_CAPACITY);
+        this.elektron = nukleus.supplyElektron(context);
+
+        final Binding binding = new Binding(null, "echo0", "echo", SERVER, null, emptyList(), null);
+        binding.id = ROUTE_ID;
+
+        this.factory = elektron.attach(binding);
+        this.sender = this::onReply;
+    }
+
+    @Test
+    public void shouldNotAllocatePerStreamAfterWarmup()
+    {
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        long initialId = 1L;
+        for (int i = 0; i < WARMUP_STREAMS; i++)
+        {
+            initialId += 2L;
+            echoStream(initialId);
+        }
+
+        final long calibrateStart = threads.getThreadAllocatedBytes(threadId);
+        final long calibrateEnd = threads.getThreadAllocatedBytes(threadId);
+        final long overhead = calibrateEnd - calibrateStart;
+
+        final long allocatedStart = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_STREAMS; i++)
+        {
+            initialId += 2L;
+            echoStream(initialId);
+        }
+        final long allocatedEnd = threads.getThreadAllocatedBytes(threadId);
+
+        assertEquals(0L, (allocatedEnd - allocatedStart - overhead) / MEASURED_STREAMS);
+    }
+
+    @Test
+    public void shouldDelayEchoedData() throws Exception
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .delay(DELAY_MILLIS)
+                .build();
+        final Binding binding = new Binding(null, "echo1", "echo", SERVER, options, emptyList(), null);
+        binding.id = DELAYED_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+        final long initialId = 1L;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(DELAYED_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(DELAYED_ROUTE_ID)
+                .streamId(initialId ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(DELAYED_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(0x03)
+                .budgetId(0L)
+                .reserved(payloadBuffer.capacity())
+                .payload(payloadBuffer, 0, payloadBuffer.capacity())
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+
+        assertEquals(0, replyDataFrames);
+
+        Thread.sleep(DELAY_MILLIS * 2);
+        context.signal();
+
+        assertEquals(1, replyDataFrames);
+    }
+
+    @Test
+    public void shouldReapIdleStream() throws Exception
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .idleTimeout(IDLE_TIMEOUT_MILLIS)
+                .build();
+        final Binding binding = new Binding(null, "echo2", "echo", SERVER, options, emptyList(), null);
+        binding.id = IDLE_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(IDLE_ROUTE_ID)
+                .streamId(1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        Thread.sleep(IDLE_TIMEOUT_MILLIS * 5);
+        context.signal();
+
+        assertEquals(0L, context.counter("echo.streams.reaped"));
+
+        Thread.sleep(IDLE_TIMEOUT_MILLIS * 5);
+        context.signal();
+
+        assertEquals(1L, context.counter("echo.streams.reaped"));
+        assertEquals(1L, context.counter("echo.streams.aborted"));
+    }
+
+    @Test
+    public void shouldRejectStreamsBeyondLimit()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .maxStreams(1)
+                .build();
+        final Binding binding = new Binding(null, "echo3", "echo", SERVER, options, emptyList(), null);
+        binding.id = LIMITED_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(LIMITED_ROUTE_ID)
+                .streamId(1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final BeginFW rejected = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(LIMITED_ROUTE_ID)
+                .streamId(3L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+
+        assertNull(factory.newStream(rejected.typeId(), rejected.buffer(), rejected.offset(), rejected.sizeof(), sender));
+        assertEquals(1, replyResetFrames);
+        assertEquals(1L, context.counter("echo.streams.rejected"));
+        assertEquals(1L, context.counter("echo.streams.active"));
+    }
+
+    @Test
+    public void shouldMirrorEchoedData()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .mirror(true)
+                .build();
+        final Route exit = new Route(0, "shadow0", emptyList());
+        exit.id = SHADOW_ROUTE_ID;
+        final Binding binding = new Binding(null, "echo4", "echo", SERVER, options, emptyList(), exit);
+        binding.id = MIRRORED_ROUTE_ID;
+
+        context.streamFactory((t, b, i, l, s) ->
+        {
+            mirrorSender = s;
+            return this::onMirror;
+        });
+
+        final StreamFactory factory = elektron.attach(binding);
+        final long initialId = 1L;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(MIRRORED_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(MIRRORED_ROUTE_ID)
+                .streamId(initialId ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(MIRRORED_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(0x03)
+                .budgetId(0L)
+                .reserved(payloadBuffer.capacity())
+                .payload(payloadBuffer, 0, payloadBuffer.capacity())
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+
+        assertEquals(1, replyDataFrames);
+        assertEquals(1, mirrorDataFrames);
+        assertEquals(1L, mirrorDataId & 0x01L);
+        assertEquals(initialId, data.streamId());
+        assertEquals(1L, context.counter("echo.mirror.frames"));
+        assertEquals(0L, context.counter("echo.mirror.drops"));
+    }
+
+    @Test
+    public void shouldResetStreamOnWindowViolation()
+    {
+        final long initialId = 1L;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId ^ 1L)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(64)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(64)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(0x03)
+                .budgetId(0L)
+                .reserved(payloadBuffer.capacity())
+                .payload(payloadBuffer, 0, payloadBuffer.capacity())
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+
+        assertEquals(0, replyDataFrames);
+        assertEquals(1, replyResetFrames);
+        assertEquals(1, replyAbortFrames);
+        assertEquals(1L, context.counter("echo.protocol.violations"));
+    }
+
+    @Test
+    public void shouldReflectDataWithoutModifyingCallerFrame()
+    {
+        final long initialId = 1L;
+
+        final MessageConsumer stream = beginStream(factory, ROUTE_ID, initialId);
+        replyWindow(stream, ROUTE_ID, initialId ^ 1L, 0L, 0L, 8192, 0L, 0);
+
+        final DataFW data = initialData(stream, ROUTE_ID, initialId, 0L, 0x03, INITIAL_BUDGET_ID, payloadBuffer.capacity(), 0);
+
+        assertEquals(1, replyDataFrames);
+        assertSame(context.writeBuffer(), replyDataBuffer);
+        assertEquals(initialId ^ 1L, replyDataId);
+        assertEquals(initialId, data.streamId());
+        assertEquals(0L, data.sequence());
+        assertEquals(0L, data.acknowledge());
+        assertEquals(8192, data.maximum());
+        assertEquals(INITIAL_BUDGET_ID, data.budgetId());
+    }
+
+    @Test
+    public void shouldReflectDataWithReplyBudget()
+    {
+        final long initialId = 1L;
+
+        final MessageConsumer stream = beginStream(factory, ROUTE_ID, initialId);
+        replyWindow(stream, ROUTE_ID, initialId ^ 1L, 0L, 0L, 8192, REPLY_BUDGET_ID, 0);
+        context.debit(8192L);
+
+        final DataFW data = initialData(stream, ROUTE_ID, initialId, 0L, 0x03, INITIAL_BUDGET_ID, payloadBuffer.capacity(), 0);
+
+        assertEquals(1, replyDataFrames);
+        assertEquals(REPLY_BUDGET_ID, replyBudgetId);
+        assertEquals(payloadBuffer.capacity(), context.claimed());
+        assertEquals(INITIAL_BUDGET_ID, data.budgetId());
+        assertEquals(initialId, data.streamId());
+    }
+
+    @Test
+    public void shouldFragmentBufferedReplyAndAcknowledgePayload()
+    {
+        final long initialId = 1L;
+        final long replyId = initialId ^ 1L;
+        final int length = payloadBuffer.capacity();
+
+        final MessageConsumer stream = beginStream(factory, ROUTE_ID, initialId);
+        replyWindow(stream, ROUTE_ID, replyId, 0L, 0L, length, 0L, 0);
+        replyWindow(stream, ROUTE_ID, replyId, 0L, 0L, 100, 0L, 0);
+
+        initialData(stream, ROUTE_ID, initialId, 0L, 0x03, 0L, length, 0);
+        assertEquals(0L, initialAck);
+
+        replyWindow(stream, ROUTE_ID, replyId, 100L, 100L, 100, 0L, 0);
+        assertEquals(100L, initialAck);
+
+        replyWindow(stream, ROUTE_ID, replyId, 200L, 200L, 100, 0L, 0);
+        replyWindow(stream, ROUTE_ID, replyId, length, length, 100, 0L, 0);
+
+        assertArrayEquals(new int[] { 0x02, 0x00, 0x01 }, copyOf(replyFlags, replyDataFrames));
+        assertEquals(length, initialAck);
+    }
+
+    @Test
+    public void shouldDrainBufferedDataAndReleaseSlot()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .buffered(true)
+                .build();
+        final Binding binding = new Binding(null, "echo4", "echo", SERVER, options, emptyList(), null);
+        binding.id = BUFFERED_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+        final long initialId = 1L;
+        final int length = payloadBuffer.capacity();
+        final int padding = 32;
+
+        final MessageConsumer stream = beginStream(factory, BUFFERED_ROUTE_ID, initialId);
+        initialData(stream, BUFFERED_ROUTE_ID, initialId, 0L, 0x03, 0L, length, padding);
+
+        assertEquals(0, replyDataFrames);
+        assertEquals(0L, initialAck);
+        assertEquals(1, context.bufferPool().acquiredSlots());
+
+        replyWindow(stream, BUFFERED_ROUTE_ID, initialId ^ 1L, 0L, 0L, 8192, 0L, 0);
+
+        assertEquals(1, replyDataFrames);
+        assertEquals(length + padding, initialAck);
+        assertEquals(0, context.bufferPool().acquiredSlots());
+
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(BUFFERED_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(length + padding)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+
+        assertEquals(1, replyEndFrames);
+        assertEquals(1L, context.counter("echo.streams.closed"));
+    }
+
+    @Test
+    public void shouldCoalesceUpToLimitAndFlushOnDeadline()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .coalesceLimit(100)
+                .coalesceDelay(1000L)
+                .build();
+        final Binding binding = new Binding(null, "echo5", "echo", SERVER, options, emptyList(), null);
+        binding.id = COALESCED_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+        final long initialId = 1L;
+        final int length = 40;
+        final int padding = 32;
+
+        final MessageConsumer stream = beginStream(factory, COALESCED_ROUTE_ID, initialId);
+        replyWindow(stream, COALESCED_ROUTE_ID, initialId ^ 1L, 0L, 0L, 8192, 0L, 0);
+
+        initialData(stream, COALESCED_ROUTE_ID, initialId, 0L, 0x03, 0L, length, padding);
+        initialData(stream, COALESCED_ROUTE_ID, initialId, length + padding, 0x03, 0L, length, padding);
+
+        assertEquals(0, replyDataFrames);
+
+        initialData(stream, COALESCED_ROUTE_ID, initialId, 2 * (length + padding), 0x03, 0L, length, padding);
+
+        assertArrayEquals(new int[] { 2 * length }, copyOf(replyLengths, replyDataFrames));
+
+        assertEquals(1, context.signal());
+
+        assertArrayEquals(new int[] { 2 * length, length }, copyOf(replyLengths, replyDataFrames));
+        assertEquals(3 * (length + padding), initialAck);
+    }
+
+    @Test
+    public void shouldCountStreamsFramesAndCredit()
+    {
+        final long initialId = 1L;
+        final int length = payloadBuffer.capacity();
+
+        final MessageConsumer stream = beginStream(factory, ROUTE_ID, initialId);
+        replyWindow(stream, ROUTE_ID, initialId ^ 1L, 0L, 0L, 8192, 0L, 0);
+        final int dataSize = initialData(stream, ROUTE_ID, initialId, 0L, 0x03, 0L, length, 0).sizeof();
+
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(length)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+
+        assertEquals(1L, context.counter("echo.streams.opened"));
+        assertEquals(1L, context.counter("echo.streams.closed"));
+        assertEquals(0L, context.counter("echo.streams.aborted"));
+        assertEquals(0L, context.counter("echo.streams.active"));
+        assertEquals(1L, context.counter("echo.begin.frames"));
+        assertEquals(1L, context.counter("echo.window.frames"));
+        assertEquals(1L, context.counter("echo.data.frames"));
+        assertEquals(dataSize, context.counter("echo.data.bytes"));
+        assertEquals(1L, context.counter("echo.end.frames"));
+        assertEquals(8192L, context.counter("echo.window.credit"));
+        assertFalse(context.registered("echo.streams.rejected"));
+        assertFalse(context.registered("echo.capture.frames"));
+        assertFalse(context.registered("echo.mirror.frames"));
+        assertFalse(context.registered("echo.load.frames.sent"));
+    }
+
+    @Test
+    public void shouldChecksumPayloadSentAndVerifyTypedEndExtension()
+    {
+        final EchoOptions options = EchoOptions.builder()
+                .checksum(true)
+                .build();
+        final Binding binding = new Binding(null, "echo6", "echo", SERVER, options, emptyList(), null);
+        binding.id = CHECKSUM_ROUTE_ID;
+
+        final StreamFactory factory = elektron.attach(binding);
+        final long initialId = 1L;
+        final int length = payloadBuffer.capacity();
+
+        final EchoChecksum expected = new EchoChecksum();
+        payloadBuffer.setMemory(0, length, (byte) 0x5a);
+        expected.update(payloadBuffer, 0, length);
+
+        final MessageConsumer stream = beginStream(factory, CHECKSUM_ROUTE_ID, initialId);
+        replyWindow(stream, CHECKSUM_ROUTE_ID, initialId ^ 1L, 0L, 0L, 8192, 0L, 0);
+        initialData(stream, CHECKSUM_ROUTE_ID, initialId, 0L, 0x03, 0L, length, 0);
+
+        final MutableDirectBuffer extension = new UnsafeBuffer(new byte[EchoEndEx.SIZEOF]);
+        EchoEndEx.encode(extension, 0, context.supplyTypeId("echo"), expected.value());
+
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(CHECKSUM_ROUTE_ID)
+                .streamId(initialId)
+                .sequence(length)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .extension(extension, 0, extension.capacity())
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+
+        assertEquals(1, replyEndFrames);
+        assertEquals(expected.value(), replyChecksum);
+        assertEquals(0L, context.counter("echo.checksum.mismatches"));
+    }
+
+    private MessageConsumer beginStream(
+        StreamFactory factory,
+        long routeId,
+        long initialId)
+    {
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(routeId)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        context.stream(initialId, stream);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        return stream;
+    }
+
+    private void replyWindow(
+        MessageConsumer stream,
+        long routeId,
+        long replyId,
+        long sequence,
+        long acknowledge,
+        int maximum,
+        long budgetId,
+        int padding)
+    {
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(routeId)
+                .streamId(replyId)
+                .sequence(sequence)
+                .acknowledge(acknowledge)
+                .maximum(maximum)
+                .traceId(0L)
+                .budgetId(budgetId)
+                .padding(padding)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+    }
+
+    private DataFW initialData(
+        MessageConsumer stream,
+        long routeId,
+        long initialId,
+        long sequence,
+        int flags,
+        long budgetId,
+        int length,
+        int padding)
+    {
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(routeId)
+                .streamId(initialId)
+                .sequence(sequence)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(flags)
+                .budgetId(budgetId)
+                .reserved(length + padding)
+                .payload(payloadBuffer, 0, length)
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+
+        return data;
+    }
+
+    private void echoStream(
+        long initialId)
+    {
+        final long replyId = initialId ^ 1L;
+
+        final BeginFW begin = beginRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(0)
+                .traceId(0L)
+                .authorization(0L)
+                .affinity(0L)
+                .build();
+        final MessageConsumer stream = factory.newStream(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof(), sender);
+        stream.accept(begin.typeId(), begin.buffer(), begin.offset(), begin.sizeof());
+
+        final WindowFW window = windowRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(replyId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .budgetId(0L)
+                .padding(0)
+                .build();
+        stream.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+
+        final DataFW data = dataRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(0L)
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .authorization(0L)
+                .flags(0x03)
+                .budgetId(0L)
+                .reserved(payloadBuffer.capacity())
+                .payload(payloadBuffer, 0, payloadBuffer.capacity())
+                .build();
+        stream.accept(data.typeId(), data.buffer(), data.offset(), data.sizeof());
+
+        final EndFW end = endRW.wrap(frameBuffer, 0, frameBuffer.capacity())
+                .routeId(ROUTE_ID)
+                .streamId(initialId)
+                .sequence(payloadBuffer.capacity())
+                .acknowledge(0L)
+                .maximum(8192)
+                .traceId(0L)
+                .authorization(0L)
+                .build();
+        stream.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
+    }
+
+    private void onReply(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        switch (msgTypeId)
+        {
+        case DataFW.TYPE_ID:
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            replyBudgetId = data.budgetId();
+            replyDataId = data.streamId();
+            replyDataBuffer = buffer;
+            if (replyDataFrames < RECORDED_FRAMES)
+            {
+                replyFlags[replyDataFrames] = data.flags();
+                replyLengths[replyDataFrames] = data.length();
+            }
+            replyDataFrames++;
+            break;
+        case WindowFW.TYPE_ID:
+            initialAck = windowRO.wrap(buffer, index, index + length).acknowledge();
+            break;
+        case EndFW.TYPE_ID:
+            final OctetsFW extension = endRO.wrap(buffer, index, index + length).extension();
+            final EchoEndEx endEx = endExRO.tryWrap(extension.buffer(), extension.offset(), extension.limit());
+            replyChecksum = endEx != null ? endEx.checksum() : 0;
+            replyEndFrames++;
+            break;
+        case ResetFW.TYPE_ID:
+            replyResetFrames++;
+            break;
+        case AbortFW.TYPE_ID:
+            replyAbortFrames++;
+            break;
+        default:
+            break;
+        }
+
+        replyBytes += length;
+    }
+
+    private void onMirror(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        switch (msgTypeId)
+        {
+        case BeginFW.TYPE_ID:
+            final long mirrorId = buffer.getLong(index + BeginFW.FIELD_OFFSET_STREAM_ID);
+            final WindowFW window = windowRW.wrap(new UnsafeBuffer(new byte[64]), 0, 64)
+                    .routeId(SHADOW_ROUTE_ID)
+                    .streamId(mirrorId)
+                    .sequence(0L)
+                    .acknowledge(0L)
+                    .maximum(8192)
+                    .traceId(0L)
+                    .budgetId(0L)
+                    .padding(0)
+                    .build();
+            mirrorSender.accept(window.typeId(), window.buffer(), window.offset(), window.sizeof());
+            break;
+        case DataFW.TYPE_ID:
+            mirrorDataId = buffer.getLong(index + DataFW.FIELD_OFFSET_STREAM_ID);
+            mirrorDataFrames++;
+            break;
+        default:
+            break;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/**
+ * Copyright 2016-2021 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.echo.internal.stream;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.echo.internal.types.stream.SignalFW;
+import org.reaktivity.reaktor.nukleus.ElektronContext;
+import org.reaktivity.reaktor.nukleus.budget.BudgetCreditor;
+import org.reaktivity.reaktor.nukleus.budget.BudgetDebitor;
+import org.reaktivity.reaktor.nukleus.buffer.BufferPool;
+import org.reaktivity.reaktor.nukleus.concurrent.Signaler;
+import org.reaktivity.reaktor.nukleus.function.MessageConsumer;
+import org.reaktivity.reaktor.nukleus.stream.StreamFactory;
+
+final class ElektronContextStub implements ElektronContext
+{
+    private final MutableDirectBuffer writeBuffer;
+    private final BufferPool bufferPool;
+    private final Signaler signaler;
+    private final BudgetCreditor creditor;
+    private final BudgetDebitorStub debitor;
+    private final Map<Long, MessageConsumer> streams;
+    private final Map<String, AtomicLong> counters;
+
+    private StreamFactory streamFactory;
+    private long initialId;
+    private long traceId;
+    private long budgetId;
+
+    ElektronContextStub(
+        int writeCapacity)
+    {
+        this.writeBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(writeCapacity));
+        this.bufferPool = new BufferPoolStub(64, 65536);
+        this.streams = new HashMap<>();
+        this.signaler = new SignalerStub(streams);
+        this.creditor = new BudgetCreditorStub();
+        this.debitor = new BudgetDebitorStub();
+        this.counters = new HashMap<>();
+        this.streamFactory = (t, b, i, l, s) -> null;
+    }
+
+    void streamFactory(
+        StreamFactory streamFactory)
+    {
+        this.streamFactory = streamFactory;
+    }
+
+    long counter(
+        String name)
+    {
+        final AtomicLong counter = counters.get(name);
+        return counter != null ? counter.get() : 0L;
+    }
+
+    void stream(
+        long streamId,
+        MessageConsumer handler)
+    {
+        streams.put(streamId, handler);
+    }
+
+    boolean registered(
+        String name)
+    {
+        return counters.containsKey(name);
+    }
+
+    int signal()
+    {
+        return ((SignalerStub) signaler).signal();
+    }
+
+    void debit(
+        long budget)
+    {
+        debitor.debit(budget);
+    }
+
+    long claimed()
+    {
+        return debitor.claimed;
+    }
+
+    @Override
+    public int index()
+    {
+        return 0;
+    }
+
+    @Override
+    public MutableDirectBuffer writeBuffer()
+    {
+        return writeBuffer;
+    }
+
+    @Override
+    public long supplyInitialId(
+        long routeId)
+    {
+        return (++initialId << 1) | 1L;
+    }
+
+    @Override
+    public long supplyReplyId(
+        long initialId)
+    {
+        return initialId ^ 1L;
+    }
+
+    @Override
+    public long supplyTraceId()
+    {
+        return ++traceId;
+    }
+
+    @Override
+    public long supplyBudgetId()
+    {
+        return ++budgetId;
+    }
+
+    @Override
+    public int supplyTypeId(
+        String name)
+    {
+        return name.hashCode();
+    }
+
+    @Override
+    public StreamFactory streamFactory()
+    {
+        return (t, b, i, l, s) -> streamFactory.newStream(t, b, i, l, s);
+    }
+
+    @Override
+    public BufferPool bufferPool()
+    {
+        return bufferPool;
+    }
+
+    @Override
+    public Signaler signaler()
+    {
+        return signaler;
+    }
+
+    @Override
+    public BudgetCreditor creditor()
+    {
+        return creditor;
+    }
+
+    @Override
+    public BudgetDebitor supplyDebitor(
+        long budgetId)
+    {
+        return debitor;
+    }
+
+    @Override
+    public LongSupplier supplyCounter(
+        long bindingId,
+        String name)
+    {
+        return counters.computeIfAbsent(name, n -> new AtomicLong())::incrementAndGet;
+    }
+
+    @Override
+    public LongConsumer supplyAccumulator(
+        long bindingId,
+        String name)
+    {
+        return counters.computeIfAbsent(name, n -> new AtomicLong())::addAndGet;
+    }
+
+    @Override
+    public MessageConsumer droppedFrameHandler()
+    {
+        return (t, b, i, l) -> {};
+    }
+
+    private static final class BufferPoolStub implements BufferPool
+    {
+        private final MutableDirectBuffer[] slots;
+        private final boolean[] acquired;
+        private final int slotCapacity;
+
+        private int acquiredSlots;
+
+        private BufferPoolStub(
+            int slotCount,
+            int slotCapacity)
+        {
+            this.slots = new MutableDirectBuffer[slotCount];
+            this.acquired = new boolean[slotCount];
+            this.slotCapacity = slotCapacity;
+
+            for (int slot = 0; slot < slotCount; slot++)
+            {
+                slots[slot] = new UnsafeBuffer(ByteBuffer.allocateDirect(slotCapacity));
+            }
+        }
+
+        @Override
+        public int slotCapacity()
+        {
+            return slotCapacity;
+        }
+
+        @Override
+        public int acquire(
+            long streamId)
+        {
+            int slot = NO_SLOT;
+
+            for (int candidate = 0; candidate < acquired.length; candidate++)
+            {
+                if (!acquired[candidate])
+                {
+                    acquired[candidate] = true;
+                    acquiredSlots++;
+                    slot = candidate;
+                    break;
+                }
+            }
+
+            return slot;
+        }
+
+        @Override
+        public MutableDirectBuffer buffer(
+            int slot)
+        {
+            return slots[slot];
+        }
+
+        @Override
+        public void release(
+            int slot)
+        {
+            assert acquired[slot];
+            acquired[slot] = false;
+            acquiredSlots--;
+        }
+
+        @Override
+        public int acquiredSlots()
+        {
+            return acquiredSlots;
+        }
+    }
+
+    private static final class SignalerStub implements Signaler
+    {
+        private final SignalFW.Builder signalRW = new SignalFW.Builder();
+        private final MutableDirectBuffer signalBuffer = new UnsafeBuffer(new byte[64]);
+        private final Map<Long, Runnable> signals = new LinkedHashMap<>();
+        private final Map<Long, MessageConsumer> streams;
+
+        private long cancelId;
+
+        private SignalerStub(
+            Map<Long, MessageConsumer> streams)
+        {
+            this.streams = streams;
+        }
+
+        @Override
+        public long signalAt(
+            long timeMillis,
+            int signalId,
+            IntConsumer handler)
+        {
+            final long cancelId = ++this.cancelId;
+            signals.put(cancelId, () -> handler.accept(signalId));
+            return cancelId;
+        }
+
+        private int signal()
+        {
+            final List<Runnable> pending = new ArrayList<>(signals.values());
+            signals.clear();
+            pending.forEach(Runnable::run);
+            return pending.size();
+        }
+
+        @Override
+        public void signalNow(
+            long routeId,
+            long streamId,
+            int signalId)
+        {
+            signalAt(0L, routeId, streamId, signalId);
+        }
+
+        @Override
+        public long signalAt(
+            long timeMillis,
+            long routeId,
+            long streamId,
+            int signalId)
+        {
+            final long cancelId = ++this.cancelId;
+            signals.put(cancelId, () -> onSignal(routeId, streamId, cancelId, signalId));
+            return cancelId;
+        }
+
+        private void onSignal(
+            long routeId,
+            long streamId,
+            long cancelId,
+            int signalId)
+        {
+            final MessageConsumer handler = streams.get(streamId);
+
+            if (handler != null)
+            {
+                final SignalFW signal = signalRW.wrap(signalBuffer, 0, signalBuffer.capacity())
+                        .routeId(routeId)
+                        .streamId(streamId)
+                        .sequence(0L)
+                        .acknowledge(0L)
+                        .maximum(0)
+                        .timestamp(0L)
+                        .traceId(0L)
+                        .authorization(0L)
+                        .cancelId(cancelId)
+                        .signalId(signalId)
+                        .build();
+
+                handler.accept(signal.typeId(), signal.buffer(), signal.offset(), signal.sizeof());
+            }
+        }
+
+        @Override
+        public boolean cancel(
+            long cancelId)
+        {
+            return signals.remove(cancelId) != null;
+        }
+    }
+
+    private static final class BudgetDebitorStub implements BudgetDebitor
+    {
+        private final Map<Long, LongConsumer> flushers = new LinkedHashMap<>();
+
+        private long budget;
+        private long claimed;
+
+        private void debit(
+            long budget)
+        {
+            this.budget += budget;
+            new ArrayList<>(flushers.values()).forEach(f -> f.accept(0L));
+        }
+
+        @Override
+        public long acquire(
+            long budgetId,
+            long watcherId,
+            LongConsumer flusher)
+        {
+            flushers.put(watcherId, flusher);
+            return budgetId;
+        }
+
+        @Override
+        public int claim(
+            long traceId,
+            long budgetIndex,
+            long watcherId,
+            int minimum,
+            int maximum,
+            int deferred)
+        {
+            final int claim = (int) Math.min(budget, maximum);
+            final int claimed = claim >= minimum ? claim : 0;
+            budget -= claimed;
+            this.claimed += claimed;
+            return claimed;
+        }
+
+        @Override
+        public void release(
+            long budgetIndex,
+            long watcherId)
+        {
+            flushers.remove(watcherId);
+        }
+    }
+
+    private static final class BudgetCreditorStub implements BudgetCreditor
+    {
+        private long budget;
+
+        @Override
+        public long acquire(
+            long budgetId)
+        {
+            return 0L;
+        }
+
+        @Override
+        public long credit(
+            long traceId,
+            long budgetIndex,
+            long credit)
+        {
+            final long previous = budget;
+            budget += credit;
+            return previous;
+        }
+
+        @Override
+        public void release(
+            long budgetIndex)
+        {
+            budget = 0L;
+        }
+    }
+}